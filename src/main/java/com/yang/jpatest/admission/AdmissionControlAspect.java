@@ -0,0 +1,182 @@
+package com.yang.jpatest.admission;
+
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CustomerRepository/LinkManDao的准入控制
+ *      按开销等级进入各自的舱壁，重查询最多占用少量连接，主键查询不会被报表挤占；
+ *      没有外层事务时在带超时的事务中执行，Spring把剩余时间作为查询超时交给Hibernate（Statement.setQueryTimeout），
+ *      超时后由MySQL驱动发送KILL QUERY在服务端取消；已在事务中的调用沿用外层事务的超时设置。
+ *      写操作（WRITE）只限制并发，不套带超时的事务。
+ *      连接池还被导入、并行扫描、无状态批处理、索引重建、发件箱中继和对账任务直接使用，
+ *      插入实体时主键号段的分配还会临时再占一个连接，
+ *      启动时检查各等级并发数之和加上这些后台任务和号段分配的连接数是否超过连接池大小
+ *
+ * @author ywq
+ */
+@Slf4j
+@Aspect
+@Lazy(false)
+@Component
+public class AdmissionControlAspect {
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private Environment environment;
+
+    private final Map<CostClass, Bulkhead> bulkheads = new EnumMap<>(CostClass.class);
+
+    private final Map<Method, CostClass> costClasses = new ConcurrentHashMap<>();
+
+    /**
+     * 不经过准入控制、直接占用连接池的后台任务：
+     *      无状态批处理（读、写各一个）、存在性索引重建（只在single-writer时）、发件箱中继、汇总数据对账
+     */
+    private static final int BULK_PROCESSOR_CONNECTIONS = 2;
+    private static final int BLOOM_REBUILD_CONNECTIONS = 1;
+    private static final int OUTBOX_RELAY_CONNECTIONS = 1;
+    private static final int RECONCILE_CONNECTIONS = 1;
+
+    /**
+     * Hibernate的TableGenerator每取一个号段在独立事务中更新sys_id_block，会在已持有的连接之外再占用一个池连接：
+     *      写操作（WRITE）、无状态批处理的写入端、并行扫描的每个线程插入实体时都可能发生
+     */
+    private static final int ID_GENERATOR_BULK_WRITERS = 1;
+
+    /**
+     * 上次输出统计时各等级的拒绝数+超时数
+     */
+    private final Map<CostClass, Long> reported = new EnumMap<>(CostClass.class);
+
+    @PostConstruct
+    public void init() {
+        for (CostClass costClass : CostClass.values()) {
+            String prefix = "jpatest.admission." + costClass.name().toLowerCase() + ".";
+            bulkheads.put(costClass, new Bulkhead(costClass,
+                    environment.getProperty(prefix + "max-concurrent", Integer.class, costClass.getDefaultMaxConcurrent()),
+                    environment.getProperty(prefix + "max-queue", Integer.class, costClass.getDefaultMaxQueue()),
+                    environment.getProperty(prefix + "max-wait", Long.class, costClass.getDefaultMaxWaitMillis()),
+                    environment.getProperty(prefix + "query-timeout", Integer.class, costClass.getDefaultQueryTimeoutSeconds())));
+            reported.put(costClass, 0L);
+        }
+        checkPoolBudget();
+    }
+
+    @Around("target(com.yang.jpatest.dao.CustomerRepository) || target(com.yang.jpatest.dao.LinkManDao)")
+    public Object admit(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        if (method.getDeclaringClass() == Object.class) {
+            return joinPoint.proceed();
+        }
+        Bulkhead bulkhead = bulkheads.get(costClasses.computeIfAbsent(method, CostClass::classify));
+        bulkhead.acquire();
+        try {
+            return proceed(joinPoint, bulkhead, CostClass.isReadOnly(method));
+        } catch (QueryTimeoutException | TransactionTimedOutException e) {
+            bulkhead.recordTimeout();
+            throw e;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    public Bulkhead getBulkhead(CostClass costClass) {
+        return bulkheads.get(costClass);
+    }
+
+    public Collection<Bulkhead> getBulkheads() {
+        return Collections.unmodifiableCollection(bulkheads.values());
+    }
+
+    /**
+     * 出现新的拒绝或超时时输出各等级的统计
+     */
+    @Scheduled(fixedDelayString = "${jpatest.admission.report-interval:60000}")
+    public void report() {
+        boolean changed = false;
+        for (Bulkhead bulkhead : bulkheads.values()) {
+            long failures = bulkhead.getRejected() + bulkhead.getTimedOut();
+            if (reported.put(bulkhead.getCostClass(), failures) != failures) {
+                changed = true;
+            }
+        }
+        if (changed) {
+            log.warn("仓库调用准入统计: {}", bulkheads.values());
+        }
+    }
+
+    /**
+     * 各等级并发数之和 + 后台任务的连接数 超过连接池大小时，后台任务高峰期前台查询会在连接池上等待，
+     * 准入控制的排队时间和查询超时不再起作用
+     */
+    private void checkPoolBudget() {
+        int poolSize = environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10);
+        int admission = 0;
+        for (Bulkhead bulkhead : bulkheads.values()) {
+            admission += bulkhead.getMaxConcurrent();
+        }
+        int background = environment.getProperty("jpatest.import.writers", Integer.class, 4)
+                + environment.getProperty("jpatest.scan.parallelism", Integer.class, 4)
+                + BULK_PROCESSOR_CONNECTIONS + RECONCILE_CONNECTIONS
+                + (environment.getProperty("jpatest.bloom.single-writer", Boolean.class, false) ? BLOOM_REBUILD_CONNECTIONS : 0)
+                + (environment.getProperty("jpatest.outbox.relay-enabled", Boolean.class, true) ? OUTBOX_RELAY_CONNECTIONS : 0);
+        int idGenerator = bulkheads.get(CostClass.WRITE).getMaxConcurrent() + ID_GENERATOR_BULK_WRITERS
+                + environment.getProperty("jpatest.scan.parallelism", Integer.class, 4);
+        if (admission + background + idGenerator > poolSize) {
+            log.warn("连接池大小{}小于仓库调用并发上限之和{}加后台任务连接数{}加主键号段连接数{}，高峰期查询会等待连接",
+                    poolSize, admission, background, idGenerator);
+        } else {
+            log.info("连接池大小{}，仓库调用并发上限之和{}，后台任务连接数{}，主键号段连接数{}",
+                    poolSize, admission, background, idGenerator);
+        }
+    }
+
+    /**
+     * 只读调用在没有外层事务时放到带超时的只读事务中执行
+     */
+    private Object proceed(ProceedingJoinPoint joinPoint, Bulkhead bulkhead, boolean readOnly) throws Throwable {
+        if (!readOnly || bulkhead.getQueryTimeoutSeconds() <= 0
+                || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+        DefaultTransactionDefinition definition = new DefaultTransactionDefinition();
+        definition.setName(joinPoint.getSignature().toShortString());
+        definition.setTimeout(bulkhead.getQueryTimeoutSeconds());
+        definition.setReadOnly(true);
+        TransactionStatus status = transactionManager.getTransaction(definition);
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            transactionManager.rollback(status);
+            throw e;
+        }
+        transactionManager.commit(status);
+        return result;
+    }
+}
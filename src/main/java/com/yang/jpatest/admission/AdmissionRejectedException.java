@@ -0,0 +1,20 @@
+package com.yang.jpatest.admission;
+
+/**
+ * 并发已满且排队失败时拒绝执行，调用方可以稍后重试或降级
+ *
+ * @author ywq
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final CostClass costClass;
+
+    public AdmissionRejectedException(CostClass costClass, String message) {
+        super(message);
+        this.costClass = costClass;
+    }
+
+    public CostClass getCostClass() {
+        return costClass;
+    }
+}
@@ -0,0 +1,151 @@
+package com.yang.jpatest.admission;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一个开销等级的舱壁：最多maxConcurrent个调用同时执行，最多maxQueue个调用排队，
+ *      排队超过maxWaitMillis或队列已满时立即拒绝，不让慢查询占满连接池。
+ *      排队名额用CAS占用，并发进入时排队数也不会超过maxQueue
+ *
+ * @author ywq
+ */
+public class Bulkhead {
+
+    private final CostClass costClass;
+
+    private final int maxConcurrent;
+
+    private final int maxQueue;
+
+    private final long maxWaitMillis;
+
+    private final int queryTimeoutSeconds;
+
+    private final Semaphore permits;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private final AtomicLong admitted = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong timedOut = new AtomicLong();
+
+    public Bulkhead(CostClass costClass, int maxConcurrent, int maxQueue, long maxWaitMillis, int queryTimeoutSeconds) {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("maxConcurrent必须大于0: " + costClass);
+        }
+        this.costClass = costClass;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueue = Math.max(0, maxQueue);
+        this.maxWaitMillis = Math.max(0, maxWaitMillis);
+        this.queryTimeoutSeconds = queryTimeoutSeconds;
+        this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+    /**
+     * 获取执行许可，成功后必须调用release
+     * @throws AdmissionRejectedException 队列已满或排队超时
+     */
+    public void acquire() {
+        try {
+            // 公平模式下有线程排队时不会插队
+            if (permits.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+                admitted.incrementAndGet();
+                return;
+            }
+            if (!enqueue()) {
+                throw reject("排队数已达上限" + maxQueue);
+            }
+            boolean acquired;
+            try {
+                acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+            } finally {
+                waiting.decrementAndGet();
+            }
+            if (!acquired) {
+                throw reject("排队超过" + maxWaitMillis + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw reject("等待时被中断");
+        }
+        admitted.incrementAndGet();
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * 记录一次查询超时（已由数据库取消）
+     */
+    public void recordTimeout() {
+        timedOut.incrementAndGet();
+    }
+
+    public CostClass getCostClass() {
+        return costClass;
+    }
+
+    public int getQueryTimeoutSeconds() {
+        return queryTimeoutSeconds;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    public int getInFlight() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    public long getAdmitted() {
+        return admitted.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getTimedOut() {
+        return timedOut.get();
+    }
+
+    @Override
+    public String toString() {
+        return costClass + "{inFlight=" + getInFlight() + "/" + maxConcurrent + ", waiting=" + getWaiting()
+                + ", admitted=" + getAdmitted() + ", rejected=" + getRejected() + ", timedOut=" + getTimedOut() + "}";
+    }
+
+    /**
+     * 占用一个排队名额，队列已满时返回false
+     */
+    private boolean enqueue() {
+        while (true) {
+            int current = waiting.get();
+            if (current >= maxQueue) {
+                return false;
+            }
+            if (waiting.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private AdmissionRejectedException reject(String reason) {
+        rejected.incrementAndGet();
+        return new AdmissionRejectedException(costClass, costClass + "级查询被拒绝: " + reason);
+    }
+}
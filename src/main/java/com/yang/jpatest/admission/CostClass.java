@@ -0,0 +1,119 @@
+package com.yang.jpatest.admission;
+
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.data.domain.Pageable;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 仓库方法的开销等级，每个等级有独立的并发上限、等待队列和查询超时
+ *      括号中依次为默认的最大并发数、最大排队数、最长排队时间(毫秒)、查询超时(秒)，
+ *      可以通过jpatest.admission.<等级>.*覆盖；各等级的并发数之和加上后台任务占用的连接数不超过连接池大小，
+ *      见AdmissionControlAspect.checkPoolBudget
+ *
+ * @author ywq
+ */
+public enum CostClass {
+
+    /**
+     * 按主键或唯一键查询单行
+     */
+    POINT(6, 100, 200, 2),
+
+    /**
+     * 分页查询、按多个主键查询
+     */
+    LIST(3, 20, 1000, 10),
+
+    /**
+     * 不分页的全表查询、前置通配符的模糊查询、统计报表
+     */
+    HEAVY(1, 5, 2000, 30),
+
+    /**
+     * 写操作（save、delete、@Modifying更新等），只限制并发，
+     *      不另开带超时的事务，沿用仓库方法自身或调用方的事务
+     */
+    WRITE(2, 50, 1000, 0);
+
+    private static final Set<String> POINT_METHODS = new HashSet<>(Arrays.asList(
+            "findById", "getOne", "getById", "existsById"));
+
+    private static final String[] READ_PREFIXES = {"find", "get", "exists", "count", "query", "read", "search", "stream"};
+
+    private final int defaultMaxConcurrent;
+
+    private final int defaultMaxQueue;
+
+    private final long defaultMaxWaitMillis;
+
+    private final int defaultQueryTimeoutSeconds;
+
+    CostClass(int defaultMaxConcurrent, int defaultMaxQueue, long defaultMaxWaitMillis, int defaultQueryTimeoutSeconds) {
+        this.defaultMaxConcurrent = defaultMaxConcurrent;
+        this.defaultMaxQueue = defaultMaxQueue;
+        this.defaultMaxWaitMillis = defaultMaxWaitMillis;
+        this.defaultQueryTimeoutSeconds = defaultQueryTimeoutSeconds;
+    }
+
+    public int getDefaultMaxConcurrent() {
+        return defaultMaxConcurrent;
+    }
+
+    public int getDefaultMaxQueue() {
+        return defaultMaxQueue;
+    }
+
+    public long getDefaultMaxWaitMillis() {
+        return defaultMaxWaitMillis;
+    }
+
+    public int getDefaultQueryTimeoutSeconds() {
+        return defaultQueryTimeoutSeconds;
+    }
+
+    /**
+     * 判断方法的开销等级：优先使用@QueryCost，其次按参数和方法名推断，非只读的方法都是WRITE
+     */
+    public static CostClass classify(Method method) {
+        QueryCost cost = AnnotationUtils.findAnnotation(method, QueryCost.class);
+        if (cost != null) {
+            return cost.value();
+        }
+        if (!isReadOnly(method)) {
+            return WRITE;
+        }
+        for (Class<?> type : method.getParameterTypes()) {
+            if (Pageable.class.isAssignableFrom(type)) {
+                return LIST;
+            }
+        }
+        String name = method.getName();
+        if (POINT_METHODS.contains(name) || name.startsWith("exists")) {
+            return POINT;
+        }
+        if ("findAllById".equals(name)) {
+            return LIST;
+        }
+        if (name.startsWith("findAll") || name.startsWith("count") || name.contains("Like")) {
+            return HEAVY;
+        }
+        return LIST;
+    }
+
+    /**
+     * 按方法名判断是否只读，只读调用在只读事务中执行
+     */
+    public static boolean isReadOnly(Method method) {
+        String name = method.getName();
+        for (String prefix : READ_PREFIXES) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
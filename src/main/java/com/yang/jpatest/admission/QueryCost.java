@@ -0,0 +1,20 @@
+package com.yang.jpatest.admission;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 显式声明仓库方法的开销等级，不声明时由CostClass.classify按方法名推断
+ *
+ * @author ywq
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface QueryCost {
+
+    CostClass value();
+}
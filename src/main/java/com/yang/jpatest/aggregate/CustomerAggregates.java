@@ -0,0 +1,104 @@
+package com.yang.jpatest.aggregate;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 客户汇总数据（内存结构）
+ *      按行业、级别、来源统计客户数，按客户统计联系人数
+ *      同一个结构既用来保存全量统计，也用来保存一次事务内产生的增量（增量可以为负数）
+ *      计数为0的分组会被移除，所以查询的代价只与分组数有关
+ *
+ * @author ywq
+ */
+public class CustomerAggregates {
+
+    /**
+     * 分组字段为null时使用的分组名
+     */
+    public static final String UNSET = "(none)";
+
+    /**
+     * 统计维度，name为Customer中对应的属性名
+     */
+    public enum Dimension {
+        INDUSTRY("custIndustry"),
+        LEVEL("custLevel"),
+        SOURCE("custSource");
+
+        private final String property;
+
+        Dimension(String property) {
+            this.property = property;
+        }
+
+        public String getProperty() {
+            return property;
+        }
+    }
+
+    private final Map<Dimension, ConcurrentHashMap<String, Long>> customerCounts = new EnumMap<>(Dimension.class);
+
+    private final ConcurrentHashMap<Long, Long> linkManCounts = new ConcurrentHashMap<>();
+
+    public CustomerAggregates() {
+        for (Dimension dimension : Dimension.values()) {
+            customerCounts.put(dimension, new ConcurrentHashMap<>());
+        }
+    }
+
+    public void adjustCustomers(Dimension dimension, String value, long delta) {
+        if (delta != 0) {
+            customerCounts.get(dimension).merge(value == null ? UNSET : value, delta, CustomerAggregates::sum);
+        }
+    }
+
+    public void adjustLinkMans(Long custId, long delta) {
+        if (custId != null && delta != 0) {
+            linkManCounts.merge(custId, delta, CustomerAggregates::sum);
+        }
+    }
+
+    /**
+     * 把另一份数据（一般是增量）累加到当前数据上
+     */
+    public void merge(CustomerAggregates delta) {
+        for (Dimension dimension : Dimension.values()) {
+            delta.customerCounts.get(dimension).forEach((value, count) -> adjustCustomers(dimension, value, count));
+        }
+        delta.linkManCounts.forEach(this::adjustLinkMans);
+    }
+
+    public boolean isEmpty() {
+        for (Map<String, Long> counts : customerCounts.values()) {
+            if (!counts.isEmpty()) {
+                return false;
+            }
+        }
+        return linkManCounts.isEmpty();
+    }
+
+    public Map<String, Long> getCustomerCounts(Dimension dimension) {
+        return Collections.unmodifiableMap(new HashMap<>(customerCounts.get(dimension)));
+    }
+
+    public Map<Long, Long> getLinkManCounts() {
+        return Collections.unmodifiableMap(new HashMap<>(linkManCounts));
+    }
+
+    public long getLinkManCount(Long custId) {
+        Long count = linkManCounts.get(custId);
+        return count == null ? 0L : count;
+    }
+
+    /**
+     * 合并计数，结果为0时返回null使ConcurrentHashMap移除该分组
+     */
+    private static Long sum(Long a, Long b) {
+        long s = a + b;
+        return s == 0 ? null : s;
+    }
+}
@@ -0,0 +1,123 @@
+package com.yang.jpatest.batch;
+
+import com.yang.jpatest.bloom.CustomerMembershipIndex;
+import com.yang.jpatest.entity.Customer;
+import com.yang.jpatest.entity.LinkMan;
+import com.yang.jpatest.entity.OutboxEvent;
+import com.yang.jpatest.listener.DictionaryValueListener;
+import com.yang.jpatest.loader.CustomerLoader;
+import com.yang.jpatest.outbox.OutboxEventFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 无状态会话上的写操作，配合hibernate.jdbc.batch_size按批发送
+ *      无状态会话不做级联、不触发Hibernate事件，Customer/LinkMan的变更在这里直接生成发件箱事件，
+ *      新增或修改的客户同时加入存在性索引，字典属性的新取值在写入前登记；
+ *      事务提交后由调用方调用committed，按本批次变更的客户失效CustomerLoader的缓存
+ *
+ * @author ywq
+ */
+public class BulkWriter {
+
+    private final StatelessSession session;
+
+    private final OutboxEventFactory outboxEventFactory;
+
+    private final CustomerMembershipIndex customerMembershipIndex;
+
+    private final DictionaryValueListener dictionaryValueListener;
+
+    private final CustomerLoader customerLoader;
+
+    private final List<OutboxEvent> events = new ArrayList<>();
+
+    /**
+     * 本批次修改或删除的客户
+     */
+    private final Set<Long> changedCustomers = new HashSet<>();
+
+    private boolean customersInserted;
+
+    private long writes;
+
+    BulkWriter(StatelessSession session, OutboxEventFactory outboxEventFactory,
+               CustomerMembershipIndex customerMembershipIndex, DictionaryValueListener dictionaryValueListener,
+               CustomerLoader customerLoader) {
+        this.session = session;
+        this.outboxEventFactory = outboxEventFactory;
+        this.customerMembershipIndex = customerMembershipIndex;
+        this.dictionaryValueListener = dictionaryValueListener;
+        this.customerLoader = customerLoader;
+    }
+
+    public Serializable insert(Object entity) {
+        registerDictValues(entity);
+        Serializable id = session.insert(entity);
+        record(OutboxEvent.INSERT, entity);
+        return id;
+    }
+
+    public void update(Object entity) {
+        registerDictValues(entity);
+        session.update(entity);
+        record(OutboxEvent.UPDATE, entity);
+    }
+
+    public void delete(Object entity) {
+        session.delete(entity);
+        record(OutboxEvent.DELETE, entity);
+    }
+
+    /**
+     * 本批次写入的行数
+     */
+    public long getWrites() {
+        return writes;
+    }
+
+    List<OutboxEvent> getEvents() {
+        return events;
+    }
+
+    /**
+     * 事务提交后调用：失效本批次变更的客户缓存，只有新增时只失效按条件缓存的列表
+     */
+    void committed() {
+        if (!changedCustomers.isEmpty()) {
+            customerLoader.invalidate(changedCustomers);
+        } else if (customersInserted) {
+            customerLoader.invalidateQueries();
+        }
+    }
+
+    private void registerDictValues(Object entity) {
+        EntityPersister persister = ((SharedSessionContractImplementor) session).getEntityPersister(null, entity);
+        dictionaryValueListener.register(persister, persister.getPropertyValues(entity));
+    }
+
+    private void record(String eventType, Object entity) {
+        writes++;
+        if (entity instanceof Customer) {
+            Customer customer = (Customer) entity;
+            events.add(outboxEventFactory.customer(eventType, customer));
+            if (OutboxEvent.INSERT.equals(eventType)) {
+                customersInserted = true;
+            } else {
+                changedCustomers.add(customer.getCustId());
+            }
+            if (!OutboxEvent.DELETE.equals(eventType)) {
+                customerMembershipIndex.add(customer.getCustId(), customer.getCustPhone());
+            }
+        } else if (entity instanceof LinkMan) {
+            events.add(outboxEventFactory.linkMan(eventType, (LinkMan) entity));
+        }
+    }
+}
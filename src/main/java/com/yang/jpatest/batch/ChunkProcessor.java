@@ -0,0 +1,18 @@
+package com.yang.jpatest.batch;
+
+import java.util.List;
+
+/**
+ * 分块处理回调，每个分块在一个事务内处理并提交
+ *
+ * @author ywq
+ */
+@FunctionalInterface
+public interface ChunkProcessor<T> {
+
+    /**
+     * @param rows 当前分块，最多commitInterval行
+     * @param writer 写入当前分块的事务
+     */
+    void process(List<T> rows, BulkWriter writer);
+}
@@ -0,0 +1,179 @@
+package com.yang.jpatest.batch;
+
+import com.yang.jpatest.dict.DictionaryRegistry;
+import com.yang.jpatest.entity.Customer;
+import com.yang.jpatest.entity.LinkMan;
+import com.yang.jpatest.entity.OutboxEvent;
+import com.yang.jpatest.outbox.OutboxEventFactory;
+import com.yang.jpatest.outbox.OutboxWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * 客户及其联系人的成组插入
+ *      按依赖顺序先插入全部客户、再插入全部联系人，每张表每rowsPerStatement行拼成一条多行INSERT；
+ *      插入前由IdAllocator为客户和联系人各预留一段主键并设置到实体上，INSERT显式写入主键，
+ *      联系人的外键直接取客户的主键，不依赖自增值的分配方式。1万个客户各带5个联系人时共约60条INSERT
+ *
+ * @author ywq
+ */
+@Component
+public class CustomerGraphInserter {
+
+    private static final String INSERT_CUSTOMER = "INSERT INTO cst_customer " +
+            "(cust_id, cust_name, cust_source_code, cust_industry_code, cust_level_code, cust_address, cust_phone) VALUES ";
+
+    private static final int CUSTOMER_COLUMNS = 7;
+
+    private static final String INSERT_LINKMAN = "INSERT INTO cst_linkman " +
+            "(lkm_id, lkm_name, lkm_gender_code, lkm_phone, lkm_mobile, lkm_email, lkm_position, lkm_memo, lkm_cust_id) VALUES ";
+
+    private static final int LINKMAN_COLUMNS = 9;
+
+    @Autowired
+    private DictionaryRegistry dictionaryRegistry;
+
+    @Autowired
+    private IdAllocator idAllocator;
+
+    @Autowired
+    private OutboxEventFactory outboxEventFactory;
+
+    @Autowired
+    private OutboxWriter outboxWriter;
+
+    /**
+     * 每条INSERT的最大行数，联系人每行9个参数，不要超过MySQL单条语句65535个参数的限制
+     */
+    @Value("${jpatest.graph-insert.rows-per-statement:1000}")
+    private int rowsPerStatement;
+
+    /**
+     * 在给定连接上插入客户及其linkmans，插入后客户和联系人的主键、联系人的customer均已回填，
+     *      同时写入发件箱事件；实体不会进入持久化上下文
+     * @return 执行的INSERT语句数（不含发件箱）
+     */
+    public int insert(Connection connection, List<Customer> customers) throws SQLException {
+        List<LinkMan> linkMans = new ArrayList<>();
+        for (Customer customer : customers) {
+            if (customer.getCustId() != null) {
+                throw new IllegalArgumentException("客户已有主键，不能成组插入: " + customer.getCustId());
+            }
+            for (LinkMan linkMan : customer.getLinkmans()) {
+                if (linkMan.getLkmId() != null) {
+                    throw new IllegalArgumentException("联系人已有主键，不能成组插入: " + linkMan.getLkmId());
+                }
+                linkMan.setCustomer(customer);
+                linkMans.add(linkMan);
+            }
+        }
+        assignIds(IdAllocator.CUSTOMER, customers, Customer::setCustId);
+        assignIds(IdAllocator.LINKMAN, linkMans, LinkMan::setLkmId);
+        int statements;
+        try {
+            statements = insertRows(connection, INSERT_CUSTOMER, CUSTOMER_COLUMNS, customers, this::bindCustomer);
+            statements += insertRows(connection, INSERT_LINKMAN, LINKMAN_COLUMNS, linkMans, this::bindLinkMan);
+        } catch (SQLException | RuntimeException e) {
+            // 插入失败时清除预留的主键，实体可以重新提交；号段本身作废
+            customers.forEach(customer -> customer.setCustId(null));
+            linkMans.forEach(linkMan -> linkMan.setLkmId(null));
+            throw e;
+        }
+
+        List<OutboxEvent> events = new ArrayList<>(customers.size() + linkMans.size());
+        for (Customer customer : customers) {
+            events.add(outboxEventFactory.customer(OutboxEvent.INSERT, customer));
+        }
+        for (LinkMan linkMan : linkMans) {
+            events.add(outboxEventFactory.linkMan(OutboxEvent.INSERT, linkMan, linkMan.getCustomer().getCustId()));
+        }
+        outboxWriter.write(connection, events);
+        return statements;
+    }
+
+    /**
+     * 一次预留rows.size()个主键，按顺序设置到实体上
+     */
+    private <T> void assignIds(String name, List<T> rows, BiConsumer<T, Long> idSetter) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        long id = idAllocator.reserve(name, rows.size());
+        for (T row : rows) {
+            idSetter.accept(row, id++);
+        }
+    }
+
+    private <T> int insertRows(Connection connection, String prefix, int columns, List<T> rows,
+                               Binder<T> binder) throws SQLException {
+        int statements = 0;
+        for (int from = 0; from < rows.size(); from += rowsPerStatement) {
+            List<T> group = rows.subList(from, Math.min(rows.size(), from + rowsPerStatement));
+            try (PreparedStatement ps = connection.prepareStatement(valuesSql(prefix, columns, group.size()))) {
+                int index = 1;
+                for (T row : group) {
+                    binder.bind(ps, index, row);
+                    index += columns;
+                }
+                ps.executeUpdate();
+            }
+            statements++;
+        }
+        return statements;
+    }
+
+    private void bindCustomer(PreparedStatement ps, int index, Customer c) throws SQLException {
+        ps.setLong(index, c.getCustId());
+        ps.setString(index + 1, c.getCustName());
+        ps.setObject(index + 2, dictionaryRegistry.encode(DictionaryRegistry.CUST_SOURCE, c.getCustSource()), Types.INTEGER);
+        ps.setObject(index + 3, dictionaryRegistry.encode(DictionaryRegistry.CUST_INDUSTRY, c.getCustIndustry()), Types.INTEGER);
+        ps.setObject(index + 4, dictionaryRegistry.encode(DictionaryRegistry.CUST_LEVEL, c.getCustLevel()), Types.INTEGER);
+        ps.setString(index + 5, c.getCustAddress());
+        ps.setString(index + 6, c.getCustPhone());
+    }
+
+    private void bindLinkMan(PreparedStatement ps, int index, LinkMan l) throws SQLException {
+        ps.setLong(index, l.getLkmId());
+        ps.setString(index + 1, l.getLkmName());
+        ps.setObject(index + 2, dictionaryRegistry.encode(DictionaryRegistry.LKM_GENDER, l.getLkmGender()), Types.INTEGER);
+        ps.setString(index + 3, l.getLkmPhone());
+        ps.setString(index + 4, l.getLkmMobile());
+        ps.setString(index + 5, l.getLkmEmail());
+        ps.setString(index + 6, l.getLkmPosition());
+        ps.setString(index + 7, l.getLkmMemo());
+        ps.setLong(index + 8, l.getCustomer().getCustId());
+    }
+
+    /**
+     * 拼出带rows组占位符的多行INSERT
+     */
+    static String valuesSql(String prefix, int columns, int rows) {
+        StringBuilder row = new StringBuilder("(");
+        for (int i = 0; i < columns; i++) {
+            row.append(i == 0 ? "?" : ", ?");
+        }
+        row.append(')');
+        StringBuilder sql = new StringBuilder(prefix.length() + rows * (row.length() + 2)).append(prefix);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(row);
+        }
+        return sql.toString();
+    }
+
+    @FunctionalInterface
+    private interface Binder<T> {
+        void bind(PreparedStatement ps, int index, T row) throws SQLException;
+    }
+}
@@ -0,0 +1,117 @@
+package com.yang.jpatest.batch;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 主键号段分配：从sys_id_block预留一段连续主键，由调用方显式写入
+ *      与Customer/LinkMan上的TableGenerator（pooled-lo）共用同一张表和同样的语义：
+ *      next_id是下一个未分配的主键，预留count个即取[next_id, next_id + count)并把next_id加count。
+ *      多行INSERT不再依赖getGeneratedKeys按行序推算的自增值（innodb_autoinc_lock_mode=2时可能不连续），
+ *      写入前主键就已确定，联系人的外键直接取客户的主键。
+ *      预留使用分配器自己的连接（不经过连接池，自动提交），与调用方的事务无关：
+ *      事务回滚时号段作废，不会被重复分配
+ *
+ * @author ywq
+ */
+@Slf4j
+@Component
+public class IdAllocator {
+
+    public static final String CUSTOMER = "cst_customer";
+    public static final String LINKMAN = "cst_linkman";
+
+    /**
+     * LAST_INSERT_ID(expr)把本连接的LAST_INSERT_ID设为预留前的next_id
+     */
+    private static final String RESERVE_SQL = "UPDATE sys_id_block SET next_id = LAST_INSERT_ID(next_id) + ? WHERE id_name = ?";
+
+    private static final String LAST_ID_SQL = "SELECT LAST_INSERT_ID()";
+
+    private static final int VALIDATION_TIMEOUT = 2;
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+
+    private DataSource idDataSource;
+
+    /**
+     * 分配器专用连接，只在持有this锁时使用
+     */
+    private Connection connection;
+
+    @PostConstruct
+    public void init() {
+        idDataSource = dataSourceProperties.initializeDataSourceBuilder().type(SimpleDriverDataSource.class).build();
+    }
+
+    @PreDestroy
+    public synchronized void destroy() {
+        closeConnection();
+    }
+
+    /**
+     * 预留count个连续主键
+     * @return 第一个主键，预留的是[返回值, 返回值 + count)
+     */
+    public synchronized long reserve(String name, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("预留数量必须大于0: " + count);
+        }
+        try {
+            Connection connection = connection();
+            try (PreparedStatement ps = connection.prepareStatement(RESERVE_SQL)) {
+                ps.setInt(1, count);
+                ps.setString(2, name);
+                if (ps.executeUpdate() != 1) {
+                    throw new IllegalStateException("sys_id_block中没有号段: " + name);
+                }
+            }
+            try (PreparedStatement ps = connection.prepareStatement(LAST_ID_SQL);
+                 ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        } catch (SQLException e) {
+            closeConnection();
+            throw new IllegalStateException("预留主键失败: " + name, e);
+        }
+    }
+
+    /**
+     * 取得专用连接，断开（如超过wait_timeout）后重新建立
+     */
+    private Connection connection() throws SQLException {
+        if (connection != null && !connection.isValid(VALIDATION_TIMEOUT)) {
+            closeConnection();
+        }
+        if (connection == null) {
+            connection = idDataSource.getConnection();
+            connection.setAutoCommit(true);
+        }
+        return connection;
+    }
+
+    private void closeConnection() {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.debug("关闭主键分配连接失败", e);
+        }
+        connection = null;
+    }
+}
@@ -0,0 +1,101 @@
+package com.yang.jpatest.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 主键区间 [lo, hi]（两端都包含）
+ *
+ * @author ywq
+ */
+public final class IdRange {
+
+    private final long lo;
+
+    private final long hi;
+
+    public IdRange(long lo, long hi) {
+        if (lo > hi) {
+            throw new IllegalArgumentException("区间下界大于上界: [" + lo + ", " + hi + "]");
+        }
+        this.lo = lo;
+        this.hi = hi;
+    }
+
+    /**
+     * 把[min, max]平均切分为最多n个区间
+     */
+    public static List<IdRange> split(long min, long max, int n) {
+        List<IdRange> ranges = new ArrayList<>(n);
+        long span = max - min + 1;
+        long step = Math.max(1, (span + n - 1) / n);
+        for (long lo = min; lo <= max; lo += step) {
+            ranges.add(new IdRange(lo, Math.min(max, lo + step - 1)));
+            if (lo > Long.MAX_VALUE - step) {
+                break;
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * 按边界切分：boundaries为升序的区间起点（不含min），相邻边界之间为一个区间
+     */
+    public static List<IdRange> split(long min, long max, List<Long> boundaries) {
+        List<IdRange> ranges = new ArrayList<>(boundaries.size() + 1);
+        long lo = min;
+        for (Long boundary : boundaries) {
+            if (boundary > lo && boundary <= max) {
+                ranges.add(new IdRange(lo, boundary - 1));
+                lo = boundary;
+            }
+        }
+        ranges.add(new IdRange(lo, max));
+        return ranges;
+    }
+
+    /**
+     * 区间中可能的主键个数
+     */
+    public long size() {
+        return hi - lo + 1;
+    }
+
+    /**
+     * 对半切分，size()为1的区间不能切分
+     */
+    public IdRange[] halve() {
+        long mid = lo + (hi - lo) / 2;
+        return new IdRange[]{new IdRange(lo, mid), new IdRange(mid + 1, hi)};
+    }
+
+    public long getLo() {
+        return lo;
+    }
+
+    public long getHi() {
+        return hi;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IdRange)) {
+            return false;
+        }
+        IdRange other = (IdRange) o;
+        return lo == other.lo && hi == other.hi;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(lo) * 31 + Long.hashCode(hi);
+    }
+
+    @Override
+    public String toString() {
+        return "[" + lo + ", " + hi + "]";
+    }
+}
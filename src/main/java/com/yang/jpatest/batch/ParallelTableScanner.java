@@ -0,0 +1,298 @@
+package com.yang.jpatest.batch;
+
+import com.yang.jpatest.bloom.CustomerMembershipIndex;
+import com.yang.jpatest.entity.Customer;
+import com.yang.jpatest.event.CustomerBulkChangedEvent;
+import com.yang.jpatest.listener.DictionaryValueListener;
+import com.yang.jpatest.loader.CustomerLoader;
+import com.yang.jpatest.outbox.OutboxEventFactory;
+import com.yang.jpatest.outbox.OutboxWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BinaryOperator;
+
+/**
+ * 按主键区间并行扫描cst_customer（例如批量重算custLevel）
+ *      先按min/max（或抽样得到的边界）切分区间，在ForkJoinPool中处理；
+ *      拆分依据是区间内的行数而不是主键跨度：抽样切分时每个区间的行数已知，
+ *      按min/max切分时先COUNT，超过maxRangeRows时对半拆分，空区间直接跳过。
+ *      空闲线程会窃取拆分出的子任务。每个非空区间使用独立的无状态会话，
+ *      即一个连接、一个事务，所以parallelism不能超过连接池大小。
+ *      任一区间失败时不再开始新的区间，等正在处理的区间结束后再抛出异常；
+ *      已经提交的区间不会回滚，只要有写入就发布CustomerBulkChangedEvent
+ *
+ * @author ywq
+ */
+@Slf4j
+@Component
+public class ParallelTableScanner {
+
+    /**
+     * 切分方式
+     */
+    public enum SplitStrategy {
+        /**
+         * 按min/max平均切分，适合主键连续的表
+         */
+        MIN_MAX,
+        /**
+         * 一次有序扫描按行号等距取主键作为边界（ROW_NUMBER，需要MySQL 8），适合主键有大段空洞的表
+         */
+        SAMPLED
+    }
+
+    private static final String RANGE_QUERY = "FROM Customer c WHERE c.custId BETWEEN :lo AND :hi ORDER BY c.custId";
+
+    private static final String COUNT_QUERY = "SELECT COUNT(c) FROM Customer c WHERE c.custId BETWEEN :lo AND :hi";
+
+    private static final String SAMPLE_QUERY = "SELECT t.cust_id FROM (" +
+            "SELECT cust_id, ROW_NUMBER() OVER (ORDER BY cust_id) AS rn FROM cst_customer) t " +
+            "WHERE t.rn > 1 AND MOD(t.rn - 1, :step) = 0 ORDER BY t.cust_id";
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private OutboxEventFactory outboxEventFactory;
+
+    @Autowired
+    private OutboxWriter outboxWriter;
+
+    @Autowired
+    private CustomerMembershipIndex customerMembershipIndex;
+
+    @Autowired
+    private DictionaryValueListener dictionaryValueListener;
+
+    @Autowired
+    private CustomerLoader customerLoader;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${jpatest.scan.parallelism:4}")
+    private int parallelism;
+
+    @Value("${jpatest.scan.max-range-rows:5000}")
+    private long maxRangeRows;
+
+    /**
+     * 并行扫描全部客户
+     * @param processor 区间处理回调
+     * @param merger 合并两个区间的结果，需满足结合律
+     * @param identity 没有数据时的结果
+     * @return 合并后的结果
+     * @throws RuntimeException 任一区间处理失败时抛出第一个失败的异常
+     */
+    public <R> R scanCustomers(SplitStrategy strategy, RangeProcessor<Customer, R> processor,
+                               BinaryOperator<R> merger, R identity) {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        List<IdRange> ranges = new ArrayList<>();
+        long knownRows = split(sessionFactory, strategy, ranges);
+        if (ranges.isEmpty()) {
+            return identity;
+        }
+        AtomicLong writes = new AtomicLong();
+        AtomicBoolean failed = new AtomicBoolean();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<RangeTask<R>> tasks = new ArrayList<>(ranges.size());
+            for (IdRange range : ranges) {
+                tasks.add(new RangeTask<>(sessionFactory, range, knownRows, processor, merger, identity, writes, failed));
+            }
+            return pool.submit(() -> {
+                for (RangeTask<R> task : tasks) {
+                    task.fork();
+                }
+                R result = identity;
+                try {
+                    for (RangeTask<R> task : tasks) {
+                        result = merger.apply(result, task.join());
+                    }
+                } catch (RuntimeException | Error e) {
+                    failed.set(true);
+                    for (RangeTask<R> task : tasks) {
+                        task.cancel(false);
+                    }
+                    throw e;
+                }
+                return result;
+            }).join();
+        } finally {
+            // 正在处理的区间可能还会提交，全部结束后writes才是最终的写入行数
+            pool.shutdownNow();
+            awaitTermination(pool);
+            if (writes.get() > 0) {
+                eventPublisher.publishEvent(new CustomerBulkChangedEvent(this, "ParallelTableScanner"));
+            }
+            log.info("并行扫描完成，初始区间{}个，写入{}行", ranges.size(), writes.get());
+        }
+    }
+
+    private void awaitTermination(ForkJoinPool pool) {
+        try {
+            while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.info("并行扫描等待正在处理的区间结束");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 切分初始区间
+     * @return 每个区间行数的上限，未知时返回-1（区间任务会先COUNT）
+     */
+    private long split(SessionFactory sessionFactory, SplitStrategy strategy, List<IdRange> ranges) {
+        StatelessSession session = sessionFactory.openStatelessSession();
+        try {
+            Object[] bounds = session.createQuery(
+                    "SELECT MIN(c.custId), MAX(c.custId), COUNT(c) FROM Customer c", Object[].class).getSingleResult();
+            if (bounds[0] == null) {
+                return 0;
+            }
+            long min = (Long) bounds[0];
+            long max = (Long) bounds[1];
+            long count = (Long) bounds[2];
+            int n = parallelism * 4;
+            if (strategy == SplitStrategy.MIN_MAX || count <= n) {
+                ranges.addAll(IdRange.split(min, max, n));
+                return -1;
+            }
+            // 区间数至少为n，保证每个线程都有任务；每个区间不超过maxRangeRows行
+            long step = Math.max(1, Math.min(maxRangeRows, (count + n - 1) / n));
+            List<Long> boundaries = new ArrayList<>();
+            for (Object id : session.createNativeQuery(SAMPLE_QUERY).setParameter("step", step).getResultList()) {
+                boundaries.add(((Number) id).longValue());
+            }
+            ranges.addAll(IdRange.split(min, max, boundaries));
+            // 抽样与统计之间可能有新插入的行，行数只作为估计
+            return step;
+        } finally {
+            session.close();
+        }
+    }
+
+    private long countRows(SessionFactory sessionFactory, IdRange range) {
+        StatelessSession session = sessionFactory.openStatelessSession();
+        try {
+            return session.createQuery(COUNT_QUERY, Long.class)
+                    .setParameter("lo", range.getLo())
+                    .setParameter("hi", range.getHi())
+                    .getSingleResult();
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * 处理一个区间：一个无状态会话、一个事务
+     */
+    private <R> R scanRange(SessionFactory sessionFactory, IdRange range, RangeProcessor<Customer, R> processor,
+                            AtomicLong writes) {
+        StatelessSession session = sessionFactory.openStatelessSession();
+        try {
+            Transaction transaction = session.beginTransaction();
+            try {
+                List<Customer> rows = session.createQuery(RANGE_QUERY, Customer.class)
+                        .setParameter("lo", range.getLo())
+                        .setParameter("hi", range.getHi())
+                        .getResultList();
+                BulkWriter writer = new BulkWriter(session, outboxEventFactory, customerMembershipIndex,
+                        dictionaryValueListener, customerLoader);
+                R result = processor.process(range, rows, writer);
+                if (!writer.getEvents().isEmpty()) {
+                    session.doWork(connection -> outboxWriter.write(connection, writer.getEvents()));
+                }
+                transaction.commit();
+                writer.committed();
+                writes.addAndGet(writer.getWrites());
+                return result;
+            } catch (RuntimeException e) {
+                transaction.rollback();
+                throw e;
+            }
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * 区间任务：区间行数超过maxRangeRows时对半拆分，子任务可以被其他线程窃取；
+     *      任一区间失败后，尚未开始的任务直接返回identity
+     */
+    private final class RangeTask<R> extends RecursiveTask<R> {
+
+        private final SessionFactory sessionFactory;
+
+        private final IdRange range;
+
+        /**
+         * 区间行数（估计值），未知时为-1
+         */
+        private final long rows;
+
+        private final RangeProcessor<Customer, R> processor;
+
+        private final BinaryOperator<R> merger;
+
+        private final R identity;
+
+        private final AtomicLong writes;
+
+        private final AtomicBoolean failed;
+
+        private RangeTask(SessionFactory sessionFactory, IdRange range, long rows, RangeProcessor<Customer, R> processor,
+                          BinaryOperator<R> merger, R identity, AtomicLong writes, AtomicBoolean failed) {
+            this.sessionFactory = sessionFactory;
+            this.range = range;
+            this.rows = rows;
+            this.processor = processor;
+            this.merger = merger;
+            this.identity = identity;
+            this.writes = writes;
+            this.failed = failed;
+        }
+
+        @Override
+        protected R compute() {
+            if (failed.get()) {
+                return identity;
+            }
+            try {
+                long count = rows >= 0 ? rows : countRows(sessionFactory, range);
+                if (count == 0) {
+                    return identity;
+                }
+                if (count <= maxRangeRows || range.size() == 1) {
+                    return scanRange(sessionFactory, range, processor, writes);
+                }
+                IdRange[] halves = range.halve();
+                RangeTask<R> left = new RangeTask<>(sessionFactory, halves[0], -1, processor, merger, identity,
+                        writes, failed);
+                left.fork();
+                R right = new RangeTask<>(sessionFactory, halves[1], -1, processor, merger, identity,
+                        writes, failed).compute();
+                return merger.apply(left.join(), right);
+            } catch (RuntimeException | Error e) {
+                failed.set(true);
+                throw e;
+            }
+        }
+    }
+}
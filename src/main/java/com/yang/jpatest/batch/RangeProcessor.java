@@ -0,0 +1,20 @@
+package com.yang.jpatest.batch;
+
+import java.util.List;
+
+/**
+ * 并行扫描中一个主键区间的处理回调，在该区间独占的连接和事务中执行
+ *
+ * @author ywq
+ */
+@FunctionalInterface
+public interface RangeProcessor<T, R> {
+
+    /**
+     * @param range 当前区间
+     * @param rows 区间内的数据，按主键升序
+     * @param writer 写入当前区间的事务
+     * @return 区间的处理结果，由ParallelTableScanner合并
+     */
+    R process(IdRange range, List<T> rows, BulkWriter writer);
+}
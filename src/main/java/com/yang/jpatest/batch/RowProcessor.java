@@ -0,0 +1,16 @@
+package com.yang.jpatest.batch;
+
+/**
+ * 逐行处理回调
+ *
+ * @author ywq
+ */
+@FunctionalInterface
+public interface RowProcessor<T> {
+
+    /**
+     * @param row 当前行，是游离对象，不会被跟踪修改，需要写回时调用writer
+     * @param writer 写入当前提交批次
+     */
+    void process(T row, BulkWriter writer);
+}
@@ -0,0 +1,161 @@
+package com.yang.jpatest.batch;
+
+import com.yang.jpatest.bloom.CustomerMembershipIndex;
+import com.yang.jpatest.entity.Customer;
+import com.yang.jpatest.event.CustomerBulkChangedEvent;
+import com.yang.jpatest.listener.DictionaryValueListener;
+import com.yang.jpatest.loader.CustomerLoader;
+import com.yang.jpatest.outbox.OutboxEventFactory;
+import com.yang.jpatest.outbox.OutboxWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.query.Query;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 大表批处理：用无状态会话（StatelessSession）遍历和写回
+ *      没有一级缓存、快照和动作队列，处理过的对象可以立即回收，内存占用与表大小无关。
+ *      读取和写入各用一个无状态会话（两个连接）：读取端用游标流式读取，
+ *      写入端每commitInterval行提交一次事务。批处理不参与调用方的事务，
+ *      实体的延迟加载集合（如Customer.linkmans）在无状态会话中不可用
+ *
+ * @author ywq
+ */
+@Slf4j
+@Component
+public class StatelessBulkProcessor {
+
+    private static final String ALL_CUSTOMERS = "FROM Customer c ORDER BY c.custId";
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private OutboxEventFactory outboxEventFactory;
+
+    @Autowired
+    private OutboxWriter outboxWriter;
+
+    @Autowired
+    private CustomerMembershipIndex customerMembershipIndex;
+
+    @Autowired
+    private DictionaryValueListener dictionaryValueListener;
+
+    @Autowired
+    private CustomerLoader customerLoader;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${jpatest.bulk.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${jpatest.bulk.commit-interval:1000}")
+    private int defaultCommitInterval;
+
+    /**
+     * 逐行处理全部客户，按默认提交间隔提交
+     * @return 处理的行数
+     */
+    public long forEachCustomer(RowProcessor<Customer> processor) {
+        return forEach(Customer.class, ALL_CUSTOMERS, Collections.emptyMap(), processor);
+    }
+
+    /**
+     * 分块处理全部客户
+     * @return 处理的行数
+     */
+    public long processCustomers(int commitInterval, ChunkProcessor<Customer> processor) {
+        return process(Customer.class, ALL_CUSTOMERS, Collections.emptyMap(), commitInterval, processor);
+    }
+
+    /**
+     * 逐行处理HQL查询的结果，按默认提交间隔提交
+     */
+    public <T> long forEach(Class<T> type, String hql, Map<String, ?> params, RowProcessor<T> processor) {
+        return process(type, hql, params, defaultCommitInterval, (rows, writer) -> {
+            for (T row : rows) {
+                processor.process(row, writer);
+            }
+        });
+    }
+
+    /**
+     * 分块处理HQL查询的结果
+     * @param hql 查询语句，建议按主键排序
+     * @param commitInterval 每个分块（事务）的行数
+     * @return 处理的行数
+     */
+    public <T> long process(Class<T> type, String hql, Map<String, ?> params, int commitInterval,
+                            ChunkProcessor<T> processor) {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        StatelessSession reader = sessionFactory.openStatelessSession();
+        StatelessSession writer = sessionFactory.openStatelessSession();
+        long rows = 0;
+        long writes = 0;
+        try {
+            Query<T> query = reader.createQuery(hql, type);
+            params.forEach((name, value) -> query.setParameter(name, value));
+            query.setFetchSize(fetchSize);
+            query.setReadOnly(true);
+            ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY);
+            try {
+                List<T> chunk = new ArrayList<>(commitInterval);
+                while (results.next()) {
+                    chunk.add(type.cast(results.get(0)));
+                    if (chunk.size() == commitInterval) {
+                        writes += commit(writer, chunk, processor);
+                        rows += chunk.size();
+                        chunk = new ArrayList<>(commitInterval);
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    writes += commit(writer, chunk, processor);
+                    rows += chunk.size();
+                }
+            } finally {
+                results.close();
+            }
+        } finally {
+            writer.close();
+            reader.close();
+            if (writes > 0) {
+                eventPublisher.publishEvent(new CustomerBulkChangedEvent(this, "StatelessBulkProcessor"));
+            }
+        }
+        log.info("批处理完成，读取{}行，写入{}行", rows, writes);
+        return rows;
+    }
+
+    private <T> long commit(StatelessSession session, List<T> chunk, ChunkProcessor<T> processor) {
+        Transaction transaction = session.beginTransaction();
+        try {
+            BulkWriter writer = new BulkWriter(session, outboxEventFactory, customerMembershipIndex,
+                    dictionaryValueListener, customerLoader);
+            processor.process(chunk, writer);
+            if (!writer.getEvents().isEmpty()) {
+                session.doWork(connection -> outboxWriter.write(connection, writer.getEvents()));
+            }
+            transaction.commit();
+            writer.committed();
+            return writer.getWrites();
+        } catch (RuntimeException e) {
+            transaction.rollback();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.yang.jpatest.bloom;
+
+import com.yang.jpatest.event.CustomerBulkChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 客户存在性索引：custId、规范化后的custPhone两个布隆过滤器
+ *      custName不建索引：列使用不区分大小写、重音的排序规则（utf8mb4_0900_ai_ci），
+ *      Java中无法逐字符还原这种比较，按原样判断会把"ACME"误判为不存在（库中是"Acme"），不能给出“一定不存在”
+ *      启动后流式读取全表构建，之后由实体事件和批量写入路径添加新值，并定时重建（清理删除/修改留下的旧值）。
+ *      索引未就绪（构建中或被标记失效）时所有判断都返回“可能存在”，由数据库给出答案。
+ *      索引只在本实例内维护，看不到其他实例和应用之外（手工SQL、其他系统）写入的客户，
+ *      这些客户要到下一次重建后才会加入，“一定不存在”的判断只有在本实例是cst_customer唯一的写入方时才成立。
+ *      因此只有开启jpatest.bloom.single-writer（默认关闭）时才构建索引、给出“一定不存在”的判断，
+ *      关闭时所有判断都返回“可能存在”
+ *
+ * @author ywq
+ */
+@Slf4j
+@Lazy(false)
+@Component
+public class CustomerMembershipIndex {
+
+    private static final String SCAN_QUERY = "SELECT c.custId, c.custPhone FROM Customer c";
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * 本实例是否是cst_customer唯一的写入方
+     */
+    @Value("${jpatest.bloom.single-writer:false}")
+    private boolean singleWriter;
+
+    @Value("${jpatest.bloom.fpp:0.01}")
+    private double fpp;
+
+    @Value("${jpatest.bloom.min-capacity:100000}")
+    private long minCapacity;
+
+    @Value("${jpatest.bulk.fetch-size:1000}")
+    private int fetchSize;
+
+    /**
+     * 正在使用的过滤器，未就绪时为null
+     */
+    private volatile Filters current;
+
+    /**
+     * 正在构建的过滤器，构建期间新增的值同时写入，避免被新过滤器漏掉
+     */
+    private volatile Filters building;
+
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+
+    /**
+     * 每次标记失效加一，重建期间发生过失效时不发布结果
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong negatives = new AtomicLong();
+
+    private final AtomicLong positives = new AtomicLong();
+
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "customer-bloom-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public boolean mightContainId(Long custId) {
+        Filters filters = filters();
+        return custId != null && count(filters == null || filters.ids.mightContain(custId.toString()));
+    }
+
+    public boolean mightContainPhone(String custPhone) {
+        String phone = normalizePhone(custPhone);
+        Filters filters = filters();
+        return phone != null && count(filters == null || filters.phones.mightContain(phone));
+    }
+
+    /**
+     * 添加一个客户的值，存在事务时提交后再添加一次（防止与重建交错时漏掉）
+     */
+    public void add(Long custId, String custPhone) {
+        addNow(custId, custPhone);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    addNow(custId, custPhone);
+                }
+            });
+        }
+    }
+
+    /**
+     * 标记失效（例如装载了拿不到主键的数据），重建完成前不再给出“一定不存在”的判断
+     *      此时数据可能尚未提交，这里不触发重建，由调用方提交后发布CustomerBulkChangedEvent触发
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        current = null;
+    }
+
+    /**
+     * 本地直接判定不存在的次数
+     */
+    public long getNegatives() {
+        return negatives.get();
+    }
+
+    /**
+     * 需要查询数据库的次数
+     */
+    public long getPositives() {
+        return positives.get();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        rebuildAsync();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBulkChanged(CustomerBulkChangedEvent event) {
+        rebuildAsync();
+    }
+
+    @Scheduled(fixedDelayString = "${jpatest.bloom.rebuild-interval:3600000}",
+            initialDelayString = "${jpatest.bloom.rebuild-interval:3600000}")
+    public void scheduledRebuild() {
+        rebuildAsync();
+    }
+
+    /**
+     * 在后台线程重建，已有重建排队时合并为一次；未开启single-writer时不构建
+     */
+    public void rebuildAsync() {
+        if (singleWriter && rebuildPending.compareAndSet(false, true)) {
+            rebuildExecutor.execute(() -> {
+                rebuildPending.set(false);
+                try {
+                    rebuild();
+                } catch (RuntimeException e) {
+                    log.warn("客户存在性索引重建失败", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * 流式读取全表构建新的过滤器后整体替换
+     */
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        long startGeneration = generation.get();
+        StatelessSession session = entityManagerFactory.unwrap(SessionFactory.class).openStatelessSession();
+        try {
+            long count = session.createQuery("SELECT COUNT(c) FROM Customer c", Long.class).getSingleResult();
+            Filters filters = new Filters(Math.max(minCapacity, count * 2), fpp);
+            building = filters;
+            ScrollableResults results = session.createQuery(SCAN_QUERY, Object[].class)
+                    .setFetchSize(fetchSize)
+                    .setReadOnly(true)
+                    .scroll(ScrollMode.FORWARD_ONLY);
+            try {
+                while (results.next()) {
+                    filters.add((Long) results.get(0), normalizePhone((String) results.get(1)));
+                }
+            } finally {
+                results.close();
+            }
+            if (generation.get() != startGeneration) {
+                log.info("客户存在性索引在重建期间被标记失效，等待下一次重建");
+                return;
+            }
+            current = filters;
+            log.info("客户存在性索引重建完成，{}行，耗时{}ms", count, System.currentTimeMillis() - start);
+        } finally {
+            building = null;
+            session.close();
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * 电话只保留数字，去掉+86/86国家码
+     *      与cst_customer.cust_phone_norm生成列（V5迁移脚本）的规则保持一致
+     */
+    public static String normalizePhone(String phone) {
+        if (phone == null) {
+            return null;
+        }
+        StringBuilder digits = new StringBuilder(phone.length());
+        for (int i = 0; i < phone.length(); i++) {
+            char ch = phone.charAt(i);
+            if (ch >= '0' && ch <= '9') {
+                digits.append(ch);
+            }
+        }
+        if (digits.length() == 13 && digits.indexOf("86") == 0) {
+            digits.delete(0, 2);
+        }
+        return digits.length() == 0 ? null : digits.toString();
+    }
+
+    /**
+     * 先读building再读current：重建先设置current再清空building，
+     * 读到building为null时，current一定已经是新的过滤器（或索引未就绪），值不会落在两者之外
+     */
+    private void addNow(Long custId, String custPhone) {
+        String phone = normalizePhone(custPhone);
+        Filters next = building;
+        Filters filters = current;
+        if (next != null) {
+            next.add(custId, phone);
+        }
+        if (filters != null && filters != next) {
+            filters.add(custId, phone);
+        }
+    }
+
+    /**
+     * 可以用来判定“一定不存在”的过滤器，没有时返回null
+     */
+    private Filters filters() {
+        return singleWriter ? current : null;
+    }
+
+    private boolean count(boolean maybe) {
+        (maybe ? positives : negatives).incrementAndGet();
+        return maybe;
+    }
+
+    private static final class Filters {
+
+        private final BloomFilter ids;
+
+        private final BloomFilter phones;
+
+        private Filters(long capacity, double fpp) {
+            this.ids = new BloomFilter(capacity, fpp);
+            this.phones = new BloomFilter(capacity, fpp);
+        }
+
+        private void add(Long custId, String phone) {
+            if (custId != null) {
+                ids.put(custId.toString());
+            }
+            if (phone != null) {
+                phones.put(phone);
+            }
+        }
+    }
+}
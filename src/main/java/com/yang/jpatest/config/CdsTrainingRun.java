@@ -0,0 +1,26 @@
+package com.yang.jpatest.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * 生成CDS归档的训练运行（mvn -Pcds package）：应用就绪后立即退出，
+ * JVM退出时把已加载的类写入-XX:ArchiveClassesAtExit指定的文件
+ *
+ * @author ywq
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "jpatest.cds.training", havingValue = "true")
+public class CdsTrainingRun {
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void exit(ApplicationReadyEvent event) {
+        log.info("CDS训练运行完成，退出");
+        System.exit(SpringApplication.exit(event.getApplicationContext()));
+    }
+}
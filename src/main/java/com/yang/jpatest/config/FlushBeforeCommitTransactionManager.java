@@ -0,0 +1,29 @@
+package com.yang.jpatest.config;
+
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 提交前先刷新持久化上下文，再回调事务同步的beforeCommit
+ *      JpaTransactionManager本身在doCommit中才由Hibernate刷新，这时beforeCommit/beforeCompletion都已执行完，
+ *      刷新时实体事件监听器注册的事务同步（如汇总数据的提交锁）收不到这两个回调；
+ *      这里提前刷新，监听器在beforeCommit之前注册，doCommit时已经没有待刷新的修改
+ *
+ * @author ywq
+ */
+public class FlushBeforeCommitTransactionManager extends JpaTransactionManager {
+
+    @Override
+    protected void prepareForCommit(DefaultTransactionStatus status) {
+        if (!status.isNewTransaction() || status.isReadOnly()) {
+            return;
+        }
+        EntityManagerHolder holder = (EntityManagerHolder) TransactionSynchronizationManager
+                .getResource(obtainEntityManagerFactory());
+        if (holder != null) {
+            holder.getEntityManager().flush();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.yang.jpatest.config;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.event.spi.PreInsertEventListener;
+import org.hibernate.event.spi.PreUpdateEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 把容器中实现了Hibernate事件监听接口的bean注册到SessionFactory
+ *      与@EntityListeners不同，Hibernate事件中可以拿到修改前的状态（oldState），
+ *      级联保存/删除同样会触发
+ *      通过Integrator在SessionFactory构建时注册，仓库延迟/后台初始化时也不会漏掉启动后的第一次写入
+ *
+ * @author ywq
+ */
+@Configuration
+public class HibernateListenerConfig {
+
+    /**
+     * 对应EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER
+     */
+    private static final String INTEGRATOR_PROVIDER = "hibernate.integrator_provider";
+
+    /**
+     * 监听器在这里（主线程）解析好，EntityManagerFactory在后台线程构建时不再访问容器
+     */
+    @Bean
+    public HibernatePropertiesCustomizer hibernateListenerCustomizer(List<PreInsertEventListener> preInsertListeners,
+                                                                     List<PreUpdateEventListener> preUpdateListeners,
+                                                                     List<PostInsertEventListener> postInsertListeners,
+                                                                     List<PostUpdateEventListener> postUpdateListeners,
+                                                                     List<PostDeleteEventListener> postDeleteListeners) {
+        Integrator integrator = new Integrator() {
+            @Override
+            public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+                                  SessionFactoryServiceRegistry serviceRegistry) {
+                EventListenerRegistry registry = serviceRegistry.getService(EventListenerRegistry.class);
+                registry.appendListeners(EventType.PRE_INSERT, preInsertListeners.toArray(new PreInsertEventListener[0]));
+                registry.appendListeners(EventType.PRE_UPDATE, preUpdateListeners.toArray(new PreUpdateEventListener[0]));
+                registry.appendListeners(EventType.POST_INSERT, postInsertListeners.toArray(new PostInsertEventListener[0]));
+                registry.appendListeners(EventType.POST_UPDATE, postUpdateListeners.toArray(new PostUpdateEventListener[0]));
+                registry.appendListeners(EventType.POST_DELETE, postDeleteListeners.toArray(new PostDeleteEventListener[0]));
+            }
+
+            @Override
+            public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+            }
+        };
+        return properties -> properties.put(INTEGRATOR_PROVIDER,
+                (IntegratorProvider) () -> Collections.singletonList(integrator));
+    }
+}
@@ -0,0 +1,65 @@
+package com.yang.jpatest.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 启动耗时统计：从JVM启动到应用就绪、到第一个请求处理完成的时间
+ *
+ * @author ywq
+ */
+@Slf4j
+@Component
+public class StartupMetrics extends OncePerRequestFilter {
+
+    private final AtomicBoolean firstRequest = new AtomicBoolean(true);
+
+    private volatile long readyMillis = -1;
+
+    private volatile long firstRequestMillis = -1;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        readyMillis = sinceJvmStart();
+        log.info("启动耗时: JVM启动到应用就绪 {}ms", readyMillis);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        chain.doFilter(request, response);
+        if (firstRequest.compareAndSet(true, false)) {
+            firstRequestMillis = sinceJvmStart();
+            log.info("启动耗时: JVM启动到第一个请求完成 {}ms", firstRequestMillis);
+        }
+    }
+
+    /**
+     * JVM启动到应用就绪的毫秒数，尚未就绪时为-1
+     */
+    public long getReadyMillis() {
+        return readyMillis;
+    }
+
+    /**
+     * JVM启动到第一个请求完成的毫秒数，尚无请求时为-1
+     */
+    public long getFirstRequestMillis() {
+        return firstRequestMillis;
+    }
+
+    private static long sinceJvmStart() {
+        return System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+    }
+}
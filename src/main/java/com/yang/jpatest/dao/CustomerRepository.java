@@ -1,9 +1,10 @@
 package com.yang.jpatest.dao;
 
+import com.yang.jpatest.admission.CostClass;
+import com.yang.jpatest.admission.QueryCost;
 import com.yang.jpatest.entity.Customer;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
@@ -11,21 +12,12 @@ import java.util.List;
 /**
  * JpaRepository<实体类类型，主键类型>：用来完成基本CRUD操作
  * JpaSpecificationExecutor<实体类类型>：用于复杂查询（分页等查询操作）
+ * CustomerRepositoryCustom：existsById、existsByCustPhone先经过存在性索引判断，update/updateCustomer改名、批量删除后写发件箱、失效缓存
  *
  * @author ywq
  */
-public interface CustomerRepository extends JpaRepository<Customer,Long>, JpaSpecificationExecutor<Customer> {
-
-    /**
-     * 表明是修改或删除操作，jpql无插入操作 @Modifying
-     * 书写sql或者jpql语句@Query
-     * @param customer
-     * @return
-     */
-    @Modifying
-    @Query(value = "UPDATE cst_customer SET cust_name = #{#customer.custName} " +
-            "WHERE cust_address = #{#customer.custAddress}",nativeQuery = true)
-    Customer update(Customer customer);
+public interface CustomerRepository extends JpaRepository<Customer,Long>, JpaSpecificationExecutor<Customer>,
+        CustomerRepositoryCustom {
 
     /**
      * 使用jpql根据名称查询
@@ -33,22 +25,10 @@ public interface CustomerRepository extends JpaRepository<Customer,Long>, JpaSpe
      * @param name
      * @return
      */
+    @QueryCost(CostClass.POINT)
     @Query(value = "from Customer where custName = ?1")
     Customer findJPQL(String name);
 
-    /**
-     * 使用jpql完成更新操作
-     *      * 在jpql完成更新/删除的操作的时候，在DAO方法上@Modifying
-     *      * 必须在调用的方法上使用事物注解
-     * @param custName
-     * @param custId
-     * @return
-     */
-    @Modifying
-    @Query(value = "UPDATE Customer SET custName = ?1 " +
-            "WHERE custId = ?2")
-    void updateCustomer(String custName,Long custId);
-
     /**
      * 使用sql语句查询全部客户信息
      * @return
@@ -56,9 +36,28 @@ public interface CustomerRepository extends JpaRepository<Customer,Long>, JpaSpe
     @Query(value = "SELECT * FROM cst_customer",nativeQuery = true)
     List<Customer> findAllSql();
 
-    Customer findByCustName(String custName);
-
     Customer findByCustNameLike(String custName);
 
     List<Customer> findByCustNameLikeAndCustIndustry(String custName,String custIndustry);
+
+    /**
+     * 按行业分组统计客户数
+     * @return [行业, 客户数]
+     */
+    @Query(value = "SELECT c.custIndustry, COUNT(c) FROM Customer c GROUP BY c.custIndustry")
+    List<Object[]> countGroupByIndustry();
+
+    /**
+     * 按级别分组统计客户数
+     * @return [级别, 客户数]
+     */
+    @Query(value = "SELECT c.custLevel, COUNT(c) FROM Customer c GROUP BY c.custLevel")
+    List<Object[]> countGroupByLevel();
+
+    /**
+     * 按来源分组统计客户数
+     * @return [来源, 客户数]
+     */
+    @Query(value = "SELECT c.custSource, COUNT(c) FROM Customer c GROUP BY c.custSource")
+    List<Object[]> countGroupBySource();
 }
@@ -0,0 +1,68 @@
+package com.yang.jpatest.dao;
+
+import com.yang.jpatest.admission.CostClass;
+import com.yang.jpatest.admission.QueryCost;
+import com.yang.jpatest.entity.Customer;
+
+/**
+ * 经过存在性索引（布隆过滤器）的查询
+ *      按id、电话的查询在索引判定一定不存在时直接返回，不访问数据库；可能存在时再查询数据库确认。
+ *      按名称的查询不经过索引，直接查询数据库（名称的比较规则见CustomerMembershipIndex）。
+ *      只有开启jpatest.bloom.single-writer（本实例是cst_customer唯一的写入方）时索引才会给出“一定不存在”，
+ *      默认关闭，所有查询都访问数据库，其他实例或应用之外写入的客户立即可见
+ *
+ * @author ywq
+ */
+public interface CustomerRepositoryCustom {
+
+    /**
+     * 覆盖CrudRepository.existsById
+     */
+    boolean existsById(Long custId);
+
+    /**
+     * 根据名称查询，没有时返回null，同名客户有多个时抛出IncorrectResultSizeDataAccessException
+     */
+    @QueryCost(CostClass.POINT)
+    Customer findByCustName(String custName);
+
+    boolean existsByCustName(String custName);
+
+    /**
+     * 按规范化后的电话判断（只保留数字，去掉86国家码），"+86 138…"和"138…"视为同一个电话
+     *      索引和数据库（cst_customer.cust_phone_norm生成列）使用同样的规范化
+     */
+    boolean existsByCustPhone(String custPhone);
+
+    /**
+     * 使用原生SQL按地址修改客户名称（原来是@Modifying @Query(nativeQuery = true)）
+     *      先锁定并取出受影响的客户id，再按id更新，为每个客户写发件箱事件
+     * @return 传入的customer
+     */
+    @QueryCost(CostClass.WRITE)
+    Customer update(Customer customer);
+
+    /**
+     * 使用jpql完成更新操作
+     *      * 在jpql完成更新/删除的操作的时候，需要存在事务
+     *      * 必须在调用的方法上使用事物注解
+     *      批量更新不触发实体事件，发件箱事件和查询缓存在这里维护
+     * @param custName
+     * @param custId
+     */
+    @QueryCost(CostClass.WRITE)
+    void updateCustomer(String custName, Long custId);
+
+    /**
+     * 覆盖JpaRepository.deleteInBatch：一条DELETE删除，不经过实体事件，
+     *      先锁定仍存在的客户，为这些客户写删除事件、失效查询缓存，提交后汇总数据对账
+     */
+    @QueryCost(CostClass.WRITE)
+    void deleteInBatch(Iterable<Customer> customers);
+
+    /**
+     * 覆盖JpaRepository.deleteAllInBatch，处理方式同deleteInBatch
+     */
+    @QueryCost(CostClass.WRITE)
+    void deleteAllInBatch();
+}
@@ -0,0 +1,187 @@
+package com.yang.jpatest.dao;
+
+import com.yang.jpatest.bloom.CustomerMembershipIndex;
+import com.yang.jpatest.entity.Customer;
+import com.yang.jpatest.entity.OutboxEvent;
+import com.yang.jpatest.event.CustomerBulkChangedEvent;
+import com.yang.jpatest.loader.CustomerLoader;
+import com.yang.jpatest.outbox.OutboxEventFactory;
+import com.yang.jpatest.outbox.OutboxWriter;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.NoResultException;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class CustomerRepositoryCustomImpl implements CustomerRepositoryCustom {
+
+    /**
+     * cust_phone_norm是按CustomerMembershipIndex.normalizePhone规则生成的列（V5迁移脚本），有索引
+     */
+    private static final String PHONE_QUERY = "SELECT COUNT(*) FROM cst_customer WHERE cust_phone_norm = ?1";
+
+    /**
+     * 锁定要改名的行，改名和发件箱事件覆盖同一批客户
+     */
+    private static final String ADDRESS_QUERY = "SELECT cust_id FROM cst_customer WHERE cust_address = ?1 FOR UPDATE";
+
+    private static final String RENAME_SQL = "UPDATE cst_customer SET cust_name = ?1 WHERE cust_id IN (?2)";
+
+    /**
+     * 锁定要删除的行，删除和发件箱事件覆盖同一批客户
+     */
+    private static final String DELETE_QUERY = "SELECT cust_id FROM cst_customer WHERE cust_id IN (?1) FOR UPDATE";
+
+    private static final String DELETE_ALL_QUERY = "SELECT cust_id FROM cst_customer FOR UPDATE";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private CustomerMembershipIndex customerMembershipIndex;
+
+    @Autowired
+    private OutboxEventFactory outboxEventFactory;
+
+    @Autowired
+    private OutboxWriter outboxWriter;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * CustomerLoader依赖本仓库，延迟注入
+     */
+    @Lazy
+    @Autowired
+    private CustomerLoader customerLoader;
+
+    @Override
+    public boolean existsById(Long custId) {
+        if (!customerMembershipIndex.mightContainId(custId)) {
+            return false;
+        }
+        return exists("SELECT COUNT(c) FROM Customer c WHERE c.custId = ?1", custId);
+    }
+
+    @Override
+    public Customer findByCustName(String custName) {
+        try {
+            return entityManager.createQuery("FROM Customer c WHERE c.custName = ?1", Customer.class)
+                    .setParameter(1, custName)
+                    .getSingleResult();
+        } catch (NoResultException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean existsByCustName(String custName) {
+        return exists("SELECT COUNT(c) FROM Customer c WHERE c.custName = ?1", custName);
+    }
+
+    @Override
+    public boolean existsByCustPhone(String custPhone) {
+        if (!customerMembershipIndex.mightContainPhone(custPhone)) {
+            return false;
+        }
+        Number count = (Number) entityManager.createNativeQuery(PHONE_QUERY)
+                .setParameter(1, CustomerMembershipIndex.normalizePhone(custPhone))
+                .getSingleResult();
+        return count.longValue() > 0;
+    }
+
+    @Override
+    public Customer update(Customer customer) {
+        List<Long> custIds = new ArrayList<>();
+        for (Object id : entityManager.createNativeQuery(ADDRESS_QUERY)
+                .setParameter(1, customer.getCustAddress())
+                .getResultList()) {
+            custIds.add(((Number) id).longValue());
+        }
+        if (!custIds.isEmpty()) {
+            entityManager.createNativeQuery(RENAME_SQL)
+                    .setParameter(1, customer.getCustName())
+                    .setParameter(2, custIds)
+                    .executeUpdate();
+            renamed(custIds, customer.getCustName());
+        }
+        return customer;
+    }
+
+    @Override
+    public void updateCustomer(String custName, Long custId) {
+        int rows = entityManager.createQuery("UPDATE Customer SET custName = ?1 WHERE custId = ?2")
+                .setParameter(1, custName)
+                .setParameter(2, custId)
+                .executeUpdate();
+        if (rows > 0) {
+            renamed(Collections.singletonList(custId), custName);
+        }
+    }
+
+    @Transactional(rollbackFor = Exception.class)
+    @Override
+    public void deleteInBatch(Iterable<Customer> customers) {
+        List<Long> custIds = new ArrayList<>();
+        for (Customer customer : customers) {
+            custIds.add(customer.getCustId());
+        }
+        if (!custIds.isEmpty()) {
+            deleteLocked(entityManager.createNativeQuery(DELETE_QUERY).setParameter(1, custIds).getResultList());
+        }
+    }
+
+    @Transactional(rollbackFor = Exception.class)
+    @Override
+    public void deleteAllInBatch() {
+        deleteLocked(entityManager.createNativeQuery(DELETE_ALL_QUERY).getResultList());
+    }
+
+    /**
+     * JPQL/原生SQL更新不经过实体事件：在当前事务的连接上写发件箱事件（格式与OutboxListener的修改事件一致），
+     *      并失效查询缓存；改名不改变id和电话，存在性索引不需要更新
+     */
+    private void renamed(List<Long> custIds, String custName) {
+        List<OutboxEvent> events = new ArrayList<>(custIds.size());
+        for (Long custId : custIds) {
+            events.add(outboxEventFactory.customerUpdate(custId, Collections.singletonMap("custName", custName)));
+        }
+        entityManager.unwrap(Session.class).doWork(connection -> outboxWriter.write(connection, events));
+        customerLoader.invalidate(custIds);
+    }
+
+    /**
+     * 按已锁定的id删除，写删除事件、失效查询缓存，并通知汇总数据对账
+     *      存在性索引中留下的旧值只会判定为“可能存在”，由定时重建清理
+     */
+    private void deleteLocked(List<?> lockedIds) {
+        if (lockedIds.isEmpty()) {
+            return;
+        }
+        List<Long> custIds = new ArrayList<>(lockedIds.size());
+        List<OutboxEvent> events = new ArrayList<>(lockedIds.size());
+        for (Object id : lockedIds) {
+            Long custId = ((Number) id).longValue();
+            custIds.add(custId);
+            events.add(outboxEventFactory.customerDelete(custId));
+        }
+        entityManager.createQuery("DELETE FROM Customer c WHERE c.custId IN ?1")
+                .setParameter(1, custIds)
+                .executeUpdate();
+        entityManager.unwrap(Session.class).doWork(connection -> outboxWriter.write(connection, events));
+        customerLoader.invalidate(custIds);
+        eventPublisher.publishEvent(new CustomerBulkChangedEvent(this, "CustomerRepository.deleteInBatch"));
+    }
+
+    private boolean exists(String jpql, Object value) {
+        return entityManager.createQuery(jpql, Long.class).setParameter(1, value).getSingleResult() > 0;
+    }
+}
@@ -0,0 +1,31 @@
+package com.yang.jpatest.dao;
+
+import com.yang.jpatest.entity.Customer;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+
+/**
+ * 客户常用查询条件
+ *      来源/行业/级别是字典编码列，参数会经过属性上的转换器变为编码，查询直接比较整数列；
+ *      字典中没有的取值不会被登记，转为不匹配任何行的编码
+ *
+ * @author ywq
+ */
+public final class CustomerSpecifications {
+
+    private CustomerSpecifications() {
+    }
+
+    public static Specification<Customer> sourceIs(String custSource) {
+        return (root, query, cb) -> cb.equal(root.get("custSource"), custSource);
+    }
+
+    public static Specification<Customer> industryIs(String custIndustry) {
+        return (root, query, cb) -> cb.equal(root.get("custIndustry"), custIndustry);
+    }
+
+    public static Specification<Customer> levelIn(Collection<String> custLevels) {
+        return (root, query, cb) -> root.get("custLevel").in(custLevels);
+    }
+}
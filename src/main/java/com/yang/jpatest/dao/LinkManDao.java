@@ -3,6 +3,17 @@ package com.yang.jpatest.dao;
 import com.yang.jpatest.entity.LinkMan;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 
-public interface LinkManDao extends JpaRepository<LinkMan,Long>, JpaSpecificationExecutor<LinkMan> {
+import java.util.List;
+
+public interface LinkManDao extends JpaRepository<LinkMan,Long>, JpaSpecificationExecutor<LinkMan>, LinkManDaoCustom {
+
+    /**
+     * 按客户分组统计联系人数（不含未关联客户的联系人）
+     * @return [客户id, 联系人数]
+     */
+    @Query(value = "SELECT l.customer.custId, COUNT(l) FROM LinkMan l " +
+            "WHERE l.customer IS NOT NULL GROUP BY l.customer.custId")
+    List<Object[]> countGroupByCustomer();
 }
@@ -0,0 +1,29 @@
+package com.yang.jpatest.dao;
+
+import com.yang.jpatest.entity.LinkMan;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 可以指定加载方案的联系人查询
+ *
+ * @author ywq
+ */
+public interface LinkManDaoCustom {
+
+    Optional<LinkMan> findById(Long lkmId, LinkManFetchProfile profile);
+
+    /**
+     * @param spec 查询条件，可以为null
+     */
+    List<LinkMan> findAll(Specification<LinkMan> spec, LinkManFetchProfile profile);
+
+    /**
+     * @param spec 查询条件，可以为null
+     */
+    Page<LinkMan> findAll(Specification<LinkMan> spec, Pageable pageable, LinkManFetchProfile profile);
+}
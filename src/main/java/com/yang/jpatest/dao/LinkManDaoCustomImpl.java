@@ -0,0 +1,89 @@
+package com.yang.jpatest.dao;
+
+import com.yang.jpatest.entity.LinkMan;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.repository.support.PageableExecutionUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.*;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 加载方案通过JPA的fetchgraph提示实现：图中的关联用join一起查出，其余关联按延迟加载
+ *
+ * @author ywq
+ */
+public class LinkManDaoCustomImpl implements LinkManDaoCustom {
+
+    private static final String FETCH_GRAPH = "javax.persistence.fetchgraph";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<LinkMan> findById(Long lkmId, LinkManFetchProfile profile) {
+        return Optional.ofNullable(entityManager.find(LinkMan.class, lkmId, hints(profile)));
+    }
+
+    @Override
+    public List<LinkMan> findAll(Specification<LinkMan> spec, LinkManFetchProfile profile) {
+        return query(spec, null, profile).getResultList();
+    }
+
+    @Override
+    public Page<LinkMan> findAll(Specification<LinkMan> spec, Pageable pageable, LinkManFetchProfile profile) {
+        TypedQuery<LinkMan> query = query(spec, pageable, profile);
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+        }
+        return PageableExecutionUtils.getPage(query.getResultList(), pageable, () -> count(spec));
+    }
+
+    private TypedQuery<LinkMan> query(Specification<LinkMan> spec, Pageable pageable, LinkManFetchProfile profile) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<LinkMan> query = cb.createQuery(LinkMan.class);
+        Root<LinkMan> root = query.from(LinkMan.class);
+        applySpecification(spec, root, query, cb);
+        if (pageable != null && pageable.getSort().isSorted()) {
+            query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+        }
+        TypedQuery<LinkMan> typedQuery = entityManager.createQuery(query);
+        hints(profile).forEach(typedQuery::setHint);
+        return typedQuery;
+    }
+
+    private long count(Specification<LinkMan> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<LinkMan> root = query.from(LinkMan.class);
+        applySpecification(spec, root, query, cb);
+        query.select(cb.count(root));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    private void applySpecification(Specification<LinkMan> spec, Root<LinkMan> root, CriteriaQuery<?> query,
+                                    CriteriaBuilder cb) {
+        if (spec != null) {
+            Predicate predicate = spec.toPredicate(root, query, cb);
+            if (predicate != null) {
+                query.where(predicate);
+            }
+        }
+    }
+
+    private Map<String, Object> hints(LinkManFetchProfile profile) {
+        if (profile.getEntityGraph() == null) {
+            return Collections.emptyMap();
+        }
+        return Collections.<String, Object>singletonMap(FETCH_GRAPH, entityManager.getEntityGraph(profile.getEntityGraph()));
+    }
+}
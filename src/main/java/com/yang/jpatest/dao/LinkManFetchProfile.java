@@ -0,0 +1,34 @@
+package com.yang.jpatest.dao;
+
+import com.yang.jpatest.entity.LinkMan;
+
+/**
+ * 联系人查询的加载方案
+ *
+ * @author ywq
+ */
+public enum LinkManFetchProfile {
+
+    /**
+     * 只查联系人字段，客户为未初始化的代理（一条SQL）
+     */
+    CONTACT_ONLY(null),
+
+    /**
+     * 联系人和所属客户一起查出（join，一条SQL）
+     */
+    WITH_CUSTOMER(LinkMan.GRAPH_WITH_CUSTOMER);
+
+    private final String entityGraph;
+
+    LinkManFetchProfile(String entityGraph) {
+        this.entityGraph = entityGraph;
+    }
+
+    /**
+     * 对应的实体图名称，为null表示按映射的默认方式加载
+     */
+    public String getEntityGraph() {
+        return entityGraph;
+    }
+}
@@ -0,0 +1,17 @@
+package com.yang.jpatest.dao;
+
+import com.yang.jpatest.entity.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface OutboxEventDao extends JpaRepository<OutboxEvent,Long> {
+
+    /**
+     * 按id顺序取出一批待投递的事件
+     * @param pageable 批大小
+     * @return
+     */
+    List<OutboxEvent> findByOrderByIdAsc(Pageable pageable);
+}
@@ -0,0 +1,14 @@
+package com.yang.jpatest.dict;
+
+import javax.persistence.Converter;
+
+/**
+ * 客户所属行业
+ */
+@Converter
+public class CustIndustryConverter extends DictConverter {
+
+    public CustIndustryConverter() {
+        super(DictionaryRegistry.CUST_INDUSTRY);
+    }
+}
@@ -0,0 +1,14 @@
+package com.yang.jpatest.dict;
+
+import javax.persistence.Converter;
+
+/**
+ * 客户级别
+ */
+@Converter
+public class CustLevelConverter extends DictConverter {
+
+    public CustLevelConverter() {
+        super(DictionaryRegistry.CUST_LEVEL);
+    }
+}
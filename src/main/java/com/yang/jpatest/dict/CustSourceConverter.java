@@ -0,0 +1,14 @@
+package com.yang.jpatest.dict;
+
+import javax.persistence.Converter;
+
+/**
+ * 客户信息来源
+ */
+@Converter
+public class CustSourceConverter extends DictConverter {
+
+    public CustSourceConverter() {
+        super(DictionaryRegistry.CUST_SOURCE);
+    }
+}
@@ -0,0 +1,48 @@
+package com.yang.jpatest.dict;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+
+import javax.persistence.AttributeConverter;
+
+/**
+ * 字典编码转换：实体中是字符串取值，表中是整数编码
+ *      Specification和派生查询中对这些属性的等值/in条件，Hibernate会用同一个转换器把参数转成编码，
+ *      所以查询直接比较编码列；这些列不再支持like
+ *      转换器只查找不分配编码，未知取值转为UNKNOWN_CODE，查询不会往字典里写入新取值；
+ *      实体写入前由DictionaryValueListener（无状态会话由BulkWriter）先登记新取值。
+ *      JPQL批量update直接设置字典属性时，需要先调用DictionaryRegistry.encode登记取值
+ *      转换器由Hibernate通过Spring的SpringBeanContainer创建，注册表延迟注入，
+ *      后台构建EntityManagerFactory时不访问容器
+ *
+ * @author ywq
+ */
+public abstract class DictConverter implements AttributeConverter<String, Integer> {
+
+    private final String type;
+
+    @Lazy
+    @Autowired
+    private DictionaryRegistry dictionaryRegistry;
+
+    protected DictConverter(String type) {
+        this.type = type;
+    }
+
+    /**
+     * 字典类型，取DictionaryRegistry中的常量
+     */
+    public String getType() {
+        return type;
+    }
+
+    @Override
+    public Integer convertToDatabaseColumn(String attribute) {
+        return dictionaryRegistry.lookup(type, attribute);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Integer code) {
+        return dictionaryRegistry.decode(type, code);
+    }
+}
@@ -0,0 +1,256 @@
+package com.yang.jpatest.dict;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 字典编码的内存缓存
+ *      每种类型第一次使用时从sys_dict_code加载；写入时遇到新取值分配下一个编码（encode），
+ *      查询时只查找不分配（lookup），未知取值得到UNKNOWN_CODE，不匹配任何行；
+ *      查询中的未知取值触发的重新加载每种类型每miss-reload-interval最多一次，
+ *      其他实例刚分配的取值在这段时间内按未知取值处理。
+ *      读写字典使用注册表自己的一个连接（不经过连接池，自动提交），不参与业务事务，
+ *      持有池中连接的调用方也不会再去占用第二个池连接。
+ *      取值按原样比较（区分大小写、重音和尾部空格），与dict_value列的utf8mb4_0900_bin排序规则一致（V2迁移脚本）
+ *
+ * @author ywq
+ */
+@Slf4j
+@Lazy(false)
+@Component
+public class DictionaryRegistry {
+
+    public static final String CUST_SOURCE = "custSource";
+    public static final String CUST_INDUSTRY = "custIndustry";
+    public static final String CUST_LEVEL = "custLevel";
+    public static final String LKM_GENDER = "lkmGender";
+
+    private static final String SELECT_SQL = "SELECT code, dict_value FROM sys_dict_code WHERE dict_type = ?";
+
+    private static final String INSERT_SQL = "INSERT INTO sys_dict_code (dict_type, code, dict_value) " +
+            "SELECT ?, COALESCE(MAX(code), 0) + 1, ? FROM sys_dict_code WHERE dict_type = ?";
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final int VALIDATION_TIMEOUT = 2;
+
+    /**
+     * 查询条件中的未知取值，编码从1开始，不匹配任何行
+     */
+    public static final int UNKNOWN_CODE = 0;
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+
+    @Value("${jpatest.dict.miss-reload-interval:1000}")
+    private long missReloadInterval;
+
+    private final Map<String, Dictionary> dictionaries = new ConcurrentHashMap<>();
+
+    private DataSource dictDataSource;
+
+    /**
+     * 注册表专用连接，只在持有this锁时使用
+     */
+    private Connection connection;
+
+    @PostConstruct
+    public void init() {
+        dictDataSource = dataSourceProperties.initializeDataSourceBuilder().type(SimpleDriverDataSource.class).build();
+    }
+
+    @PreDestroy
+    public synchronized void destroy() {
+        closeConnection();
+    }
+
+    /**
+     * 取值转编码（写入），新取值会分配编码
+     */
+    public Integer encode(String type, String value) {
+        if (value == null) {
+            return null;
+        }
+        Integer code = dictionary(type).codeOf(value);
+        return code != null ? code : register(type, value);
+    }
+
+    /**
+     * 取值转编码（查询），不分配编码
+     *      缓存中没有时重新加载一次（可能是其他实例新分配的），仍然没有时返回UNKNOWN_CODE；
+     *      距上次加载不到missReloadInterval时不重新加载，未知取值的查询不会每次都查字典表
+     */
+    public Integer lookup(String type, String value) {
+        if (value == null) {
+            return null;
+        }
+        Dictionary dictionary = dictionary(type);
+        Integer code = dictionary.codeOf(value);
+        if (code == null && dictionary.loadedBefore(missReloadInterval)) {
+            code = reloadIfStale(type).codeOf(value);
+        }
+        return code != null ? code : UNKNOWN_CODE;
+    }
+
+    /**
+     * 编码转取值
+     */
+    public String decode(String type, Integer code) {
+        if (code == null) {
+            return null;
+        }
+        String value = dictionary(type).valueOf(code);
+        if (value == null) {
+            // 可能是其他实例新分配的编码
+            value = reload(type).valueOf(code);
+        }
+        if (value == null) {
+            throw new IllegalStateException("字典" + type + "中不存在编码" + code);
+        }
+        return value;
+    }
+
+    /**
+     * 某类型下的全部 编码 -> 取值
+     */
+    public Map<Integer, String> getValues(String type) {
+        return Collections.unmodifiableMap(dictionary(type).valueByCode);
+    }
+
+    /**
+     * 从数据库重新加载某类型的字典
+     */
+    public synchronized Dictionary reload(String type) {
+        Map<String, Integer> codeByValue = new HashMap<>();
+        Map<Integer, String> valueByCode = new HashMap<>();
+        try (PreparedStatement ps = connection().prepareStatement(SELECT_SQL)) {
+            ps.setString(1, type);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    codeByValue.put(rs.getString(2), rs.getInt(1));
+                    valueByCode.put(rs.getInt(1), rs.getString(2));
+                }
+            }
+        } catch (SQLException e) {
+            closeConnection();
+            throw new IllegalStateException("加载字典" + type + "失败", e);
+        }
+        Dictionary dictionary = new Dictionary(codeByValue, valueByCode);
+        dictionaries.put(type, dictionary);
+        return dictionary;
+    }
+
+    /**
+     * 等锁期间其他线程可能已经重新加载过
+     */
+    private synchronized Dictionary reloadIfStale(String type) {
+        Dictionary dictionary = dictionaries.get(type);
+        if (dictionary != null && !dictionary.loadedBefore(missReloadInterval)) {
+            return dictionary;
+        }
+        return reload(type);
+    }
+
+    private Dictionary dictionary(String type) {
+        Dictionary dictionary = dictionaries.get(type);
+        return dictionary != null ? dictionary : reload(type);
+    }
+
+    /**
+     * 分配新编码：并发分配（包括其他实例）冲突时重新加载后重试
+     */
+    private synchronized Integer register(String type, String value) {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            Integer code = reload(type).codeOf(value);
+            if (code != null) {
+                return code;
+            }
+            try (PreparedStatement ps = connection().prepareStatement(INSERT_SQL)) {
+                ps.setString(1, type);
+                ps.setString(2, value);
+                ps.setString(3, type);
+                ps.executeUpdate();
+                log.info("字典{}新增取值: {}", type, value);
+            } catch (SQLIntegrityConstraintViolationException e) {
+                log.debug("字典{}分配编码冲突，重试: {}", type, value);
+            } catch (SQLException e) {
+                closeConnection();
+                throw new IllegalStateException("字典" + type + "分配编码失败: " + value, e);
+            }
+        }
+        Integer code = reload(type).codeOf(value);
+        if (code == null) {
+            throw new IllegalStateException("字典" + type + "分配编码失败: " + value);
+        }
+        return code;
+    }
+
+    /**
+     * 取得专用连接，断开（如超过wait_timeout）后重新建立
+     */
+    private Connection connection() throws SQLException {
+        if (connection != null && !connection.isValid(VALIDATION_TIMEOUT)) {
+            closeConnection();
+        }
+        if (connection == null) {
+            connection = dictDataSource.getConnection();
+            connection.setAutoCommit(true);
+        }
+        return connection;
+    }
+
+    private void closeConnection() {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.debug("关闭字典连接失败", e);
+        }
+        connection = null;
+    }
+
+    /**
+     * 一种类型的字典，加载后不再修改，重新加载时整体替换
+     */
+    public static final class Dictionary {
+
+        private final Map<String, Integer> codeByValue;
+
+        private final Map<Integer, String> valueByCode;
+
+        private final long loadedAt = System.currentTimeMillis();
+
+        private Dictionary(Map<String, Integer> codeByValue, Map<Integer, String> valueByCode) {
+            this.codeByValue = codeByValue;
+            this.valueByCode = valueByCode;
+        }
+
+        private boolean loadedBefore(long millis) {
+            return System.currentTimeMillis() - loadedAt >= millis;
+        }
+
+        public Integer codeOf(String value) {
+            return codeByValue.get(value);
+        }
+
+        public String valueOf(Integer code) {
+            return valueByCode.get(code);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.yang.jpatest.dict;
+
+import javax.persistence.Converter;
+
+/**
+ * 联系人性别
+ */
+@Converter
+public class LkmGenderConverter extends DictConverter {
+
+    public LkmGenderConverter() {
+        super(DictionaryRegistry.LKM_GENDER);
+    }
+}
@@ -1,8 +1,13 @@
 package com.yang.jpatest.entity;
 
+import com.yang.jpatest.dict.CustIndustryConverter;
+import com.yang.jpatest.dict.CustLevelConverter;
+import com.yang.jpatest.dict.CustSourceConverter;
 import lombok.Data;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import java.io.Serializable;
@@ -42,9 +47,18 @@ public class Customer implements Serializable {
      *      columnDefinition: 定义建表时创建此列的DDL
      *      secondaryTable: 从表名。如果此列不建在主表上（默认建在主表），
      *                      该属性定义该列所在从表的名字搭建开发环境[重点]
+     * 这里使用TABLE方式（号段表sys_id_block，每次取50个，pooled-lo），与IdAllocator共用：
+     *      成组插入和导入预留主键后显式写入，不依赖多行INSERT的自增值；插入也可以按批发送
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "customerId")
+    @GenericGenerator(name = "customerId", strategy = "org.hibernate.id.enhanced.TableGenerator", parameters = {
+            @Parameter(name = "table_name", value = "sys_id_block"),
+            @Parameter(name = "segment_column_name", value = "id_name"),
+            @Parameter(name = "value_column_name", value = "next_id"),
+            @Parameter(name = "segment_value", value = "cst_customer"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo")})
     @Column(name = "cust_id")
     private Long custId;
     /**
@@ -54,18 +68,22 @@ public class Customer implements Serializable {
     private String custName;
     /**
      * 客户信息来源
+     * @Convert: 表中保存字典编码（sys_dict_code），读写时转换
      */
-    @Column(name = "cust_source")
+    @Convert(converter = CustSourceConverter.class)
+    @Column(name = "cust_source_code")
     private String custSource;
     /**
      * 客户所属行业
      */
-    @Column(name = "cust_industry")
+    @Convert(converter = CustIndustryConverter.class)
+    @Column(name = "cust_industry_code")
     private String custIndustry;
     /**
      * 客户级别
      */
-    @Column(name = "cust_level")
+    @Convert(converter = CustLevelConverter.class)
+    @Column(name = "cust_level_code")
     private String custLevel;
     /**
      * 客户联系地址
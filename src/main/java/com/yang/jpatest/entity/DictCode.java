@@ -0,0 +1,38 @@
+package com.yang.jpatest.entity;
+
+import lombok.Data;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+/**
+ * 字典编码表：低基数字段（客户来源、行业、级别，联系人性别）的取值与整数编码的对应关系
+ *      实体表中只保存code，由DictionaryRegistry缓存并在读写时转换
+ */
+@Entity
+@Table(name = "sys_dict_code", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_dict_code", columnNames = {"dict_type", "code"}),
+        @UniqueConstraint(name = "uk_dict_value", columnNames = {"dict_type", "dict_value"})
+})
+@Data
+public class DictCode implements Serializable {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+    /**
+     * 字典类型，取DictionaryRegistry中的常量
+     */
+    @Column(name = "dict_type", length = 32, nullable = false)
+    private String dictType;
+    /**
+     * 编码，同一类型内从1开始递增
+     */
+    @Column(name = "code", nullable = false)
+    private Integer code;
+    /**
+     * 取值，列使用utf8mb4_0900_bin排序规则，按原样比较（V2迁移脚本）
+     */
+    @Column(name = "dict_value", nullable = false)
+    private String dictValue;
+}
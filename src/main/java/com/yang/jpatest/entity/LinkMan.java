@@ -1,24 +1,45 @@
 package com.yang.jpatest.entity;
 
+import com.yang.jpatest.dict.LkmGenderConverter;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import java.io.Serializable;
 
 /**
  * 联系人的实体类（数据模型）
+ *      所属客户延迟加载，需要客户信息时按LinkManFetchProfile使用实体图一次查出
  */
+@NamedEntityGraph(name = LinkMan.GRAPH_WITH_CUSTOMER, attributeNodes = @NamedAttributeNode("customer"))
 @Entity
 @Table(name="cst_linkman")
 @Data
 public class LinkMan implements Serializable {
+
+    public static final String GRAPH_WITH_CUSTOMER = "LinkMan.withCustomer";
+
+    /**
+     * 号段表分配主键，见Customer.custId
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "linkManId")
+    @GenericGenerator(name = "linkManId", strategy = "org.hibernate.id.enhanced.TableGenerator", parameters = {
+            @Parameter(name = "table_name", value = "sys_id_block"),
+            @Parameter(name = "segment_column_name", value = "id_name"),
+            @Parameter(name = "value_column_name", value = "next_id"),
+            @Parameter(name = "segment_value", value = "cst_linkman"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo")})
     @Column(name = "lkm_id")
     private Long lkmId;
     @Column(name = "lkm_name")
     private String lkmName;
-    @Column(name = "lkm_gender")
+    @Convert(converter = LkmGenderConverter.class)
+    @Column(name = "lkm_gender_code")
     private String lkmGender;
     @Column(name = "lkm_phone")
     private String lkmPhone;
@@ -31,9 +52,11 @@ public class LinkMan implements Serializable {
     @Column(name = "lkm_memo")
     private String lkmMemo;
 
-    //多对一关系映射：多个联系人对应客户
-    @ManyToOne(targetEntity = Customer.class)
+    //多对一关系映射：多个联系人对应客户（延迟加载，toString/equals不访问客户，避免触发加载）
+    @ManyToOne(targetEntity = Customer.class, fetch = FetchType.LAZY)
     @JoinColumn(name = "lkm_cust_id", referencedColumnName = "cust_id")
     //用它的主键，对应联系人表中的外键
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private Customer customer;
 }
\ No newline at end of file
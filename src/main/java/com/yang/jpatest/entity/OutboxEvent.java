@@ -0,0 +1,61 @@
+package com.yang.jpatest.entity;
+
+import lombok.Data;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 变更事件发件箱（transactional outbox）
+ *      Customer/LinkMan的增删改在同一个事务内写入此表，由OutboxRelay按id顺序分批投递，
+ *      下游通过消费事件做增量同步，不再轮询整张cst_customer
+ */
+@Entity
+@Table(name = "cst_outbox")
+@Data
+public class OutboxEvent implements Serializable {
+
+    public static final String INSERT = "INSERT";
+    public static final String UPDATE = "UPDATE";
+    public static final String DELETE = "DELETE";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+    /**
+     * 实体名称：Customer / LinkMan
+     */
+    @Column(name = "aggregate_type", length = 32)
+    private String aggregateType;
+    /**
+     * 实体主键
+     */
+    @Column(name = "aggregate_id")
+    private Long aggregateId;
+    /**
+     * 事件类型：INSERT / UPDATE / DELETE
+     */
+    @Column(name = "event_type", length = 8)
+    private String eventType;
+    /**
+     * 变更内容(JSON)，插入为全部非空字段，修改只包含变化的字段，删除为空对象
+     */
+    @Column(name = "payload", columnDefinition = "TEXT")
+    private String payload;
+    @Column(name = "created_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdAt;
+
+    public OutboxEvent() {
+    }
+
+    public OutboxEvent(String aggregateType, Long aggregateId, String eventType, String payload) {
+        this.aggregateType = aggregateType;
+        this.aggregateId = aggregateId;
+        this.eventType = eventType;
+        this.payload = payload;
+        this.createdAt = new Date();
+    }
+}
@@ -0,0 +1,27 @@
+package com.yang.jpatest.event;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * 客户数据被批量修改的事件
+ *      JPQL/SQL批量更新、无状态会话、JDBC批量写入等路径不会触发实体生命周期事件，
+ *      这些路径完成后发布此事件，由监听方自行校正（如重新统计聚合数据）
+ *
+ * @author ywq
+ */
+public class CustomerBulkChangedEvent extends ApplicationEvent {
+
+    /**
+     * 发生批量修改的位置，仅用于日志
+     */
+    private final String origin;
+
+    public CustomerBulkChangedEvent(Object source, String origin) {
+        super(source);
+        this.origin = origin;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+}
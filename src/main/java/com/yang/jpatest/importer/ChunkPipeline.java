@@ -0,0 +1,321 @@
+package com.yang.jpatest.importer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * 分块导入流水线：读取 -> 并行解析映射 -> 多连接并行写入
+ *      读取线程按行切分成固定大小的分块；解析线程把分块解析为ImportRow；
+ *      写入线程每个分块取一个连接，在一个事务内批量写入并记录检查点后提交。
+ *      阶段之间是有界队列，下游跟不上时上游阻塞（背压），内存中最多只有几个分块
+ *
+ * @author ywq
+ */
+@Slf4j
+public class ChunkPipeline<T> {
+
+    private static final long POLL_MILLIS = 100;
+
+    private final String name;
+
+    private final DataSource dataSource;
+
+    private final Function<CsvRecord, ImportRow<T>> mapper;
+
+    private final ChunkWriter<T> writer;
+
+    private final ImportCheckpoint checkpoint;
+
+    private final ImportProgress progress;
+
+    private final Map<String, Long> keys;
+
+    private int chunkSize = 5000;
+
+    private int parsers = 2;
+
+    private int writers = 4;
+
+    private int queueCapacity = 8;
+
+    private Runnable afterCommit = () -> { };
+
+    /**
+     * @param name 流水线名称，用于线程名和日志
+     * @param mapper 把一条CSV记录映射为ImportRow，抛出异常时该行被跳过
+     * @param writer 写入阶段，写入行数按它返回的实际行数统计
+     * @param keys 写入阶段返回的 key -> 主键 映射在提交后放入此Map，可以为null
+     */
+    public ChunkPipeline(String name, DataSource dataSource, Function<CsvRecord, ImportRow<T>> mapper,
+                         ChunkWriter<T> writer, ImportCheckpoint checkpoint, ImportProgress progress,
+                         Map<String, Long> keys) {
+        this.name = name;
+        this.dataSource = dataSource;
+        this.mapper = mapper;
+        this.writer = writer;
+        this.checkpoint = checkpoint;
+        this.progress = progress;
+        this.keys = keys;
+    }
+
+    public ChunkPipeline<T> chunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    public ChunkPipeline<T> parsers(int parsers) {
+        this.parsers = parsers;
+        return this;
+    }
+
+    public ChunkPipeline<T> writers(int writers) {
+        this.writers = writers;
+        return this;
+    }
+
+    public ChunkPipeline<T> queueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    /**
+     * 每个分块提交后在写入线程上执行，例如失效读缓存
+     */
+    public ChunkPipeline<T> afterCommit(Runnable afterCommit) {
+        this.afterCommit = afterCommit;
+        return this;
+    }
+
+    /**
+     * 运行流水线直到文件读完，任一阶段失败时停止并抛出ImportFailedException
+     * @param reader CSV文件，第一行为表头
+     */
+    public void run(BufferedReader reader) throws IOException {
+        String headerLine = reader.readLine();
+        if (headerLine == null) {
+            return;
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> header = CsvParser.parseLine(headerLine);
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(), i);
+        }
+
+        BlockingQueue<Chunk<String>> raw = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Chunk<ImportRow<T>>> parsed = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        ExecutorService parserPool = Executors.newFixedThreadPool(parsers, threadFactory(name + "-parse"));
+        ExecutorService writerPool = Executors.newFixedThreadPool(writers, threadFactory(name + "-write"));
+        for (int i = 0; i < parsers; i++) {
+            parserPool.execute(guard(failure, () -> parseLoop(columns, raw, parsed, failure)));
+        }
+        for (int i = 0; i < writers; i++) {
+            writerPool.execute(guard(failure, () -> writeLoop(parsed, failure)));
+        }
+        try {
+            readLoop(reader, raw, failure);
+        } catch (IOException | RuntimeException e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            for (int i = 0; i < parsers; i++) {
+                offer(raw, Chunk.<String>end(), failure);
+            }
+            awaitTermination(parserPool);
+            for (int i = 0; i < writers; i++) {
+                offer(parsed, Chunk.<ImportRow<T>>end(), failure);
+            }
+            awaitTermination(writerPool);
+        }
+        if (failure.get() != null) {
+            throw new ImportFailedException(name + " 导入失败，进度: " + progress, failure.get());
+        }
+        log.info("{} 导入完成: {}", name, progress);
+    }
+
+    private void readLoop(BufferedReader reader, BlockingQueue<Chunk<String>> raw,
+                          AtomicReference<Throwable> failure) throws IOException {
+        int chunkNo = 0;
+        long lineNo = 1;
+        List<String> lines = new ArrayList<>(chunkSize);
+        String line;
+        while (failure.get() == null && (line = reader.readLine()) != null) {
+            lineNo++;
+            lines.add(line);
+            if (lines.size() == chunkSize) {
+                emit(new Chunk<>(chunkNo++, lineNo - chunkSize + 1, lines), raw, failure);
+                lines = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!lines.isEmpty()) {
+            emit(new Chunk<>(chunkNo, lineNo - lines.size() + 1, lines), raw, failure);
+        }
+    }
+
+    private void emit(Chunk<String> chunk, BlockingQueue<Chunk<String>> raw, AtomicReference<Throwable> failure) {
+        progress.rowsRead(chunk.items.size());
+        if (checkpoint.isDone(chunk.no)) {
+            progress.chunkSkipped();
+            return;
+        }
+        offer(raw, chunk, failure);
+    }
+
+    private void parseLoop(Map<String, Integer> columns, BlockingQueue<Chunk<String>> raw,
+                           BlockingQueue<Chunk<ImportRow<T>>> parsed, AtomicReference<Throwable> failure) {
+        Chunk<String> chunk;
+        while ((chunk = poll(raw, failure)) != null && !chunk.isEnd()) {
+            List<ImportRow<T>> rows = new ArrayList<>(chunk.items.size());
+            long lineNo = chunk.firstLine;
+            for (String line : chunk.items) {
+                if (line.trim().isEmpty()) {
+                    lineNo++;
+                    continue;
+                }
+                try {
+                    rows.add(mapper.apply(new CsvRecord(columns, CsvParser.parseLine(line), lineNo)));
+                } catch (RuntimeException e) {
+                    progress.rowRejected();
+                    log.warn("{} 第{}行无法导入: {}", name, lineNo, e.getMessage());
+                }
+                lineNo++;
+            }
+            offer(parsed, new Chunk<>(chunk.no, chunk.firstLine, rows), failure);
+        }
+    }
+
+    private void writeLoop(BlockingQueue<Chunk<ImportRow<T>>> parsed, AtomicReference<Throwable> failure)
+            throws SQLException {
+        Chunk<ImportRow<T>> chunk;
+        while ((chunk = poll(parsed, failure)) != null && !chunk.isEnd()) {
+            ChunkResult written;
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(false);
+                try {
+                    written = chunk.items.isEmpty() ? ChunkResult.of(0) : writer.write(connection, chunk.items);
+                    checkpoint.markDone(connection, chunk.no, written.getKeys());
+                    connection.commit();
+                } catch (SQLException | RuntimeException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            }
+            if (keys != null) {
+                keys.putAll(written.getKeys());
+            }
+            if (written.getRows() > 0) {
+                afterCommit.run();
+            }
+            long chunks = progress.chunkWritten(written.getRows());
+            if (chunks % 10 == 0) {
+                log.info("{} 导入进度: {}", name, progress);
+            }
+        }
+    }
+
+    private <E> void offer(BlockingQueue<E> queue, E item, AtomicReference<Throwable> failure) {
+        try {
+            while (!queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (failure.get() != null) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        }
+    }
+
+    /**
+     * 取下一个分块，其他阶段失败时返回null
+     */
+    private <E> E poll(BlockingQueue<E> queue, AtomicReference<Throwable> failure) {
+        try {
+            E item;
+            while ((item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                if (failure.get() != null) {
+                    return null;
+                }
+            }
+            return item;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+            return null;
+        }
+    }
+
+    private Runnable guard(AtomicReference<Throwable> failure, Stage stage) {
+        return () -> {
+            try {
+                stage.run();
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        };
+    }
+
+    private void awaitTermination(ExecutorService pool) {
+        pool.shutdown();
+        try {
+            while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.info("{} 等待线程结束，进度: {}", name, progress);
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @FunctionalInterface
+    private interface Stage {
+
+        void run() throws Exception;
+    }
+
+    /**
+     * 分块，no从0开始；items为空且no为-1表示结束标记
+     */
+    private static final class Chunk<E> {
+
+        private final int no;
+
+        private final long firstLine;
+
+        private final List<E> items;
+
+        private Chunk(int no, long firstLine, List<E> items) {
+            this.no = no;
+            this.firstLine = firstLine;
+            this.items = items;
+        }
+
+        private static <E> Chunk<E> end() {
+            return new Chunk<>(-1, 0, Collections.<E>emptyList());
+        }
+
+        private boolean isEnd() {
+            return no < 0;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.yang.jpatest.importer;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 一个分块的写入结果
+ *      rows为实际写入的行数，写入阶段自己跳过的行（例如找不到所属客户的联系人）不计入；
+ *      keys为本分块新产生的 key -> 主键 映射
+ *
+ * @author ywq
+ */
+@Getter
+@AllArgsConstructor
+public class ChunkResult {
+
+    private final int rows;
+
+    private final Map<String, Long> keys;
+
+    public static ChunkResult of(int rows) {
+        return new ChunkResult(rows, Collections.<String, Long>emptyMap());
+    }
+}
@@ -0,0 +1,22 @@
+package com.yang.jpatest.importer;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 导入流水线的写入阶段，每个分块在一个连接、一个事务内写入
+ *
+ * @author ywq
+ */
+public interface ChunkWriter<T> {
+
+    /**
+     * 写入一个分块（不要提交事务，由流水线统一提交）
+     * @param connection 本分块独占的连接，已关闭自动提交
+     * @param rows 分块内的数据
+     * @return 实际写入的行数和本分块新产生的 key -> 主键 映射
+     * @throws SQLException
+     */
+    ChunkResult write(Connection connection, List<ImportRow<T>> rows) throws SQLException;
+}
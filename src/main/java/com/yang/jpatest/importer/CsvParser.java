@@ -0,0 +1,50 @@
+package com.yang.jpatest.importer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 简单的CSV行解析（RFC 4180）
+ *      支持双引号包裹的字段、字段内的逗号以及用两个双引号转义的双引号；
+ *      不支持跨行的字段，导入文件需保证一条记录一行
+ *
+ * @author ywq
+ */
+public final class CsvParser {
+
+    private CsvParser() {
+    }
+
+    public static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(ch);
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (ch != '\r') {
+                field.append(ch);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("双引号未闭合: " + line);
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,43 @@
+package com.yang.jpatest.importer;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CSV中的一条记录，按表头的列名取值
+ *
+ * @author ywq
+ */
+public class CsvRecord {
+
+    private final Map<String, Integer> columns;
+
+    private final List<String> values;
+
+    private final long lineNo;
+
+    public CsvRecord(Map<String, Integer> columns, List<String> values, long lineNo) {
+        if (values.size() != columns.size()) {
+            throw new IllegalArgumentException("第" + lineNo + "行列数为" + values.size() + "，表头列数为" + columns.size());
+        }
+        this.columns = columns;
+        this.values = values;
+        this.lineNo = lineNo;
+    }
+
+    /**
+     * 取列值，文件中没有这一列或值为空串时返回null
+     */
+    public String get(String column) {
+        Integer index = columns.get(column);
+        if (index == null) {
+            return null;
+        }
+        String value = values.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    public long getLineNo() {
+        return lineNo;
+    }
+}
@@ -0,0 +1,38 @@
+package com.yang.jpatest.importer;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * 导入检查点
+ *      分块的完成记录和 key -> 主键 映射与分块数据在同一个事务中写入，
+ *      提交了的分块一定有记录，没提交的一定没有，中断后重新导入不会重复写入
+ *
+ * @author ywq
+ */
+public interface ImportCheckpoint {
+
+    /**
+     * 分块是否已在之前的导入中提交
+     */
+    boolean isDone(int chunkNo);
+
+    /**
+     * 在分块的事务中记录完成，随分块一起提交或回滚
+     * @param connection 分块使用的连接，已关闭自动提交
+     * @param keys 本分块新产生的 key -> 主键 映射
+     * @throws SQLException 分块已被记录过时同样抛出，使分块回滚
+     */
+    void markDone(Connection connection, int chunkNo, Map<String, Long> keys) throws SQLException;
+
+    /**
+     * 把之前导入时记录的映射加载到keys中
+     */
+    void loadKeys(Map<String, Long> keys);
+
+    /**
+     * 整个导入完成后删除检查点
+     */
+    void delete();
+}
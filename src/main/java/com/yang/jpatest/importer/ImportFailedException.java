@@ -0,0 +1,13 @@
+package com.yang.jpatest.importer;
+
+/**
+ * 导入中断，已提交的分块记录在检查点中，用同一份文件、同样的分块大小重新导入会跳过这些分块
+ *
+ * @author ywq
+ */
+public class ImportFailedException extends RuntimeException {
+
+    public ImportFailedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
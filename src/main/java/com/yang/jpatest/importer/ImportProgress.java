@@ -0,0 +1,94 @@
+package com.yang.jpatest.importer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 导入进度统计，各阶段的线程并发累加
+ *
+ * @author ywq
+ */
+public class ImportProgress {
+
+    private final long startTime = System.currentTimeMillis();
+
+    private final AtomicLong rowsRead = new AtomicLong();
+
+    private final AtomicLong rowsRejected = new AtomicLong();
+
+    private final AtomicLong rowsWritten = new AtomicLong();
+
+    private final AtomicLong rowsUnresolved = new AtomicLong();
+
+    private final AtomicLong chunksWritten = new AtomicLong();
+
+    private final AtomicLong chunksSkipped = new AtomicLong();
+
+    public void rowsRead(long count) {
+        rowsRead.addAndGet(count);
+    }
+
+    public void rowRejected() {
+        rowsRejected.incrementAndGet();
+    }
+
+    public void rowUnresolved() {
+        rowsUnresolved.incrementAndGet();
+    }
+
+    public long chunkWritten(long rows) {
+        rowsWritten.addAndGet(rows);
+        return chunksWritten.incrementAndGet();
+    }
+
+    public void chunkSkipped() {
+        chunksSkipped.incrementAndGet();
+    }
+
+    public long getRowsRead() {
+        return rowsRead.get();
+    }
+
+    /**
+     * 解析或映射失败而跳过的行数
+     */
+    public long getRowsRejected() {
+        return rowsRejected.get();
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten.get();
+    }
+
+    /**
+     * 找不到所属客户（cust_key无法解析）而没有导入的联系人行数
+     */
+    public long getRowsUnresolved() {
+        return rowsUnresolved.get();
+    }
+
+    public long getChunksWritten() {
+        return chunksWritten.get();
+    }
+
+    /**
+     * 检查点中已完成而跳过的分块数
+     */
+    public long getChunksSkipped() {
+        return chunksSkipped.get();
+    }
+
+    /**
+     * 写入速度（行/秒）
+     */
+    public long getRowsPerSecond() {
+        long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+        return rowsWritten.get() * 1000 / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return "read=" + getRowsRead() + ", written=" + getRowsWritten() + ", rejected=" + getRowsRejected()
+                + ", unresolved=" + getRowsUnresolved() + ", chunks=" + getChunksWritten()
+                + ", skippedChunks=" + getChunksSkipped() + ", rows/s=" + getRowsPerSecond();
+    }
+}
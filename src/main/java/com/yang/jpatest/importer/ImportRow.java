@@ -0,0 +1,19 @@
+package com.yang.jpatest.importer;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 映射后的一行数据
+ *      key为来源系统中客户的标识（cust_key列），用于在内存中把联系人关联到导入后的客户id
+ *
+ * @author ywq
+ */
+@Getter
+@AllArgsConstructor
+public class ImportRow<T> {
+
+    private final String key;
+
+    private final T entity;
+}
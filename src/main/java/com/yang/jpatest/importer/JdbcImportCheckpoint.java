@@ -0,0 +1,143 @@
+package com.yang.jpatest.importer;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 保存在数据库中的导入检查点（sys_import_chunk、sys_import_key）
+ *      以CSV文件绝对路径、文件内容和分块大小的SHA-256区分不同的导入：
+ *      分块号只在同一份文件、同样的分块大小下对应同样的行，文件被修改或分块大小改变后视为新的导入，
+ *      不会按旧的分块号跳过或重复写入；上一次导入中已提交的分块需要自行清理后再导入
+ *
+ * @author ywq
+ */
+public class JdbcImportCheckpoint implements ImportCheckpoint {
+
+    private static final String INSERT_CHUNK = "INSERT INTO sys_import_chunk (import_id, chunk_no) VALUES (?, ?)";
+
+    private static final String INSERT_KEY = "INSERT INTO sys_import_key (import_id, cust_key, cust_id) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE cust_id = VALUES(cust_id)";
+
+    private final DataSource dataSource;
+
+    private final String importId;
+
+    private final Set<Integer> doneChunks = new HashSet<>();
+
+    /**
+     * 构造时读一遍文件计算摘要
+     * @param chunkSize 导入使用的分块大小
+     */
+    public JdbcImportCheckpoint(DataSource dataSource, Path csv, int chunkSize) {
+        this.dataSource = dataSource;
+        this.importId = importId(csv, chunkSize);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(
+                     "SELECT chunk_no FROM sys_import_chunk WHERE import_id = ?")) {
+            ps.setString(1, importId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    doneChunks.add(rs.getInt(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("读取检查点失败: " + csv, e);
+        }
+    }
+
+    @Override
+    public boolean isDone(int chunkNo) {
+        return doneChunks.contains(chunkNo);
+    }
+
+    @Override
+    public void markDone(Connection connection, int chunkNo, Map<String, Long> keys) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(INSERT_CHUNK)) {
+            ps.setString(1, importId);
+            ps.setInt(2, chunkNo);
+            ps.executeUpdate();
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement ps = connection.prepareStatement(INSERT_KEY)) {
+            for (Map.Entry<String, Long> entry : keys.entrySet()) {
+                ps.setString(1, importId);
+                ps.setString(2, entry.getKey());
+                ps.setLong(3, entry.getValue());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    @Override
+    public void loadKeys(Map<String, Long> keys) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(
+                     "SELECT cust_key, cust_id FROM sys_import_key WHERE import_id = ?")) {
+            ps.setString(1, importId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    keys.put(rs.getString(1), rs.getLong(2));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("读取检查点失败: " + importId, e);
+        }
+    }
+
+    @Override
+    public void delete() {
+        try (Connection connection = dataSource.getConnection()) {
+            for (String table : new String[]{"sys_import_key", "sys_import_chunk"}) {
+                try (PreparedStatement ps = connection.prepareStatement("DELETE FROM " + table + " WHERE import_id = ?")) {
+                    ps.setString(1, importId);
+                    ps.executeUpdate();
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("删除检查点失败: " + importId, e);
+        }
+        doneChunks.clear();
+    }
+
+    static String importId(Path csv, int chunkSize) {
+        try (InputStream in = Files.newInputStream(csv)) {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(csv.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8));
+            sha.update((byte) 0);
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                sha.update(buffer, 0, n);
+            }
+            sha.update((byte) 0);
+            sha.update(Integer.toString(chunkSize).getBytes(StandardCharsets.UTF_8));
+            byte[] digest = sha.digest();
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取导入文件失败: " + csv, e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.yang.jpatest.listener;
+
+import com.yang.jpatest.aggregate.CustomerAggregates;
+import com.yang.jpatest.aggregate.CustomerAggregates.Dimension;
+import com.yang.jpatest.entity.Customer;
+import com.yang.jpatest.entity.LinkMan;
+import com.yang.jpatest.service.CustomerAggregateService;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+
+/**
+ * 客户汇总数据的增量维护
+ *      监听Customer/LinkMan的插入、修改、删除（包括级联操作），计算出增量交给CustomerAggregateService，
+ *      增量在事务提交后才会生效
+ *
+ * @author ywq
+ */
+@Component
+public class CustomerAggregateListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    @Lazy
+    @Autowired
+    private CustomerAggregateService customerAggregateService;
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        apply(event.getEntity(), event.getPersister(), null, event.getState());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!supports(event.getEntity())) {
+            return;
+        }
+        if (event.getOldState() == null) {
+            // 游离对象直接update时没有旧状态，无法计算增量，交给对账任务处理
+            customerAggregateService.markStale();
+            return;
+        }
+        apply(event.getEntity(), event.getPersister(), event.getOldState(), event.getState());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        apply(event.getEntity(), event.getPersister(), event.getDeletedState(), null);
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    private boolean supports(Object entity) {
+        return entity instanceof Customer || entity instanceof LinkMan;
+    }
+
+    /**
+     * oldState为null表示插入，newState为null表示删除
+     */
+    private void apply(Object entity, EntityPersister persister, Object[] oldState, Object[] newState) {
+        if (!supports(entity)) {
+            return;
+        }
+        CustomerAggregates delta = new CustomerAggregates();
+        if (entity instanceof Customer) {
+            for (Dimension dimension : Dimension.values()) {
+                String property = dimension.getProperty();
+                Object before = EntityStates.get(persister, oldState, property);
+                Object after = EntityStates.get(persister, newState, property);
+                if (oldState != null && newState != null && Objects.equals(before, after)) {
+                    continue;
+                }
+                if (oldState != null) {
+                    delta.adjustCustomers(dimension, (String) before, -1);
+                }
+                if (newState != null) {
+                    delta.adjustCustomers(dimension, (String) after, 1);
+                }
+            }
+        } else {
+            Long before = EntityStates.customerId(EntityStates.get(persister, oldState, "customer"));
+            Long after = EntityStates.customerId(EntityStates.get(persister, newState, "customer"));
+            if (!Objects.equals(before, after)) {
+                delta.adjustLinkMans(before, -1);
+                delta.adjustLinkMans(after, 1);
+            }
+        }
+        if (!delta.isEmpty()) {
+            customerAggregateService.apply(delta);
+        }
+    }
+}
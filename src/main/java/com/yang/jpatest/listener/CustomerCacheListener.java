@@ -0,0 +1,58 @@
+package com.yang.jpatest.listener;
+
+import com.yang.jpatest.entity.Customer;
+import com.yang.jpatest.loader.CustomerLoader;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * 通过持久化上下文新增、修改、删除客户时失效CustomerLoader的缓存（当前立即失效，事务提交后再失效一次）
+ *      新增只影响按条件缓存的列表；修改和删除按id失效
+ *      JPQL/原生SQL更新、无状态会话和JDBC导入不触发这里，由各自的调用方失效
+ *
+ * @author ywq
+ */
+@Component
+public class CustomerCacheListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    /**
+     * CustomerLoader依赖仓库，仓库依赖EntityManagerFactory，延迟注入
+     */
+    @Lazy
+    @Autowired
+    private CustomerLoader customerLoader;
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Customer) {
+            customerLoader.invalidateQueries();
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Customer) {
+            customerLoader.invalidate((Long) event.getId());
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Customer) {
+            customerLoader.invalidate((Long) event.getId());
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+}
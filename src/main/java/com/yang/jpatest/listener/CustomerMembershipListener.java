@@ -0,0 +1,48 @@
+package com.yang.jpatest.listener;
+
+import com.yang.jpatest.bloom.CustomerMembershipIndex;
+import com.yang.jpatest.entity.Customer;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * 新增或修改客户时把新的id/电话加入存在性索引
+ *      删除和修改留下的旧值不处理，由定时重建清理
+ *
+ * @author ywq
+ */
+@Component
+public class CustomerMembershipListener implements PostInsertEventListener, PostUpdateEventListener {
+
+    @Lazy
+    @Autowired
+    private CustomerMembershipIndex customerMembershipIndex;
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        add(event.getEntity());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        add(event.getEntity());
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    private void add(Object entity) {
+        if (entity instanceof Customer) {
+            Customer customer = (Customer) entity;
+            customerMembershipIndex.add(customer.getCustId(), customer.getCustPhone());
+        }
+    }
+}
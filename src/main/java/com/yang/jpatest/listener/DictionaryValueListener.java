@@ -0,0 +1,76 @@
+package com.yang.jpatest.listener;
+
+import com.yang.jpatest.dict.DictConverter;
+import com.yang.jpatest.dict.DictionaryRegistry;
+import org.hibernate.event.spi.PreInsertEvent;
+import org.hibernate.event.spi.PreInsertEventListener;
+import org.hibernate.event.spi.PreUpdateEvent;
+import org.hibernate.event.spi.PreUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.Type;
+import org.hibernate.type.descriptor.converter.AttributeConverterTypeAdapter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 实体写入前登记字典属性的新取值
+ *      DictConverter只查找不分配编码，新增/修改实体时在这里先分配，
+ *      随后绑定insert/update参数时转换器就能取到编码
+ *
+ * @author ywq
+ */
+@Component
+public class DictionaryValueListener implements PreInsertEventListener, PreUpdateEventListener {
+
+    @Lazy
+    @Autowired
+    private DictionaryRegistry dictionaryRegistry;
+
+    /**
+     * 实体名 -> 各属性的字典类型（不是字典属性的为null）
+     */
+    private final Map<String, String[]> dictTypes = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean onPreInsert(PreInsertEvent event) {
+        register(event.getPersister(), event.getState());
+        return false;
+    }
+
+    @Override
+    public boolean onPreUpdate(PreUpdateEvent event) {
+        register(event.getPersister(), event.getState());
+        return false;
+    }
+
+    /**
+     * 登记状态数组中字典属性的取值，无状态会话不触发事件，由BulkWriter直接调用
+     */
+    public void register(EntityPersister persister, Object[] state) {
+        String[] types = dictTypes.computeIfAbsent(persister.getEntityName(), name -> dictTypes(persister));
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] != null && state[i] != null) {
+                dictionaryRegistry.encode(types[i], (String) state[i]);
+            }
+        }
+    }
+
+    private static String[] dictTypes(EntityPersister persister) {
+        Type[] propertyTypes = persister.getPropertyTypes();
+        String[] types = new String[propertyTypes.length];
+        for (int i = 0; i < propertyTypes.length; i++) {
+            if (propertyTypes[i] instanceof AttributeConverterTypeAdapter) {
+                Object converter = ((AttributeConverterTypeAdapter<?>) propertyTypes[i]).getAttributeConverter()
+                        .getConverterBean().getBeanInstance();
+                if (converter instanceof DictConverter) {
+                    types[i] = ((DictConverter) converter).getType();
+                }
+            }
+        }
+        return types;
+    }
+}
@@ -0,0 +1,45 @@
+package com.yang.jpatest.listener;
+
+import com.yang.jpatest.entity.Customer;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+
+/**
+ * Hibernate事件中实体状态数组（Object[] state）的读取工具
+ *
+ * @author ywq
+ */
+public final class EntityStates {
+
+    private EntityStates() {
+    }
+
+    /**
+     * 根据属性名从状态数组中取值，state为null（例如没有旧状态）时返回null
+     */
+    public static Object get(EntityPersister persister, Object[] state, String property) {
+        if (state == null) {
+            return null;
+        }
+        String[] names = persister.getPropertyNames();
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(property)) {
+                return state[i];
+            }
+        }
+        throw new IllegalArgumentException(persister.getEntityName() + " 不存在属性 " + property);
+    }
+
+    /**
+     * 取关联客户的主键，代理对象直接读取标识符，不会触发加载
+     */
+    public static Long customerId(Object customer) {
+        if (customer == null) {
+            return null;
+        }
+        if (customer instanceof HibernateProxy) {
+            return (Long) ((HibernateProxy) customer).getHibernateLazyInitializer().getIdentifier();
+        }
+        return ((Customer) customer).getCustId();
+    }
+}
@@ -0,0 +1,127 @@
+package com.yang.jpatest.listener;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yang.jpatest.entity.Customer;
+import com.yang.jpatest.entity.LinkMan;
+import com.yang.jpatest.entity.OutboxEvent;
+import com.yang.jpatest.outbox.OutboxWriter;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 把Customer/LinkMan的变更写入发件箱
+ *      事件先缓存在当前Session上，事务提交前（flush之后）用一个JDBC批次写入cst_outbox，
+ *      与业务数据在同一个事务内，回滚时丢弃
+ *
+ * @author ywq
+ */
+@Component
+public class OutboxListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    @Autowired
+    private OutboxWriter outboxWriter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Map<SharedSessionContractImplementor, List<OutboxEvent>> pending = new ConcurrentHashMap<>();
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (supports(event.getEntity())) {
+            record(event.getSession(), event.getPersister(), event.getId(), OutboxEvent.INSERT,
+                    changes(event.getPersister(), event.getState(), null, false));
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (supports(event.getEntity())) {
+            record(event.getSession(), event.getPersister(), event.getId(), OutboxEvent.UPDATE,
+                    changes(event.getPersister(), event.getState(), event.getDirtyProperties(), true));
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (supports(event.getEntity())) {
+            record(event.getSession(), event.getPersister(), event.getId(), OutboxEvent.DELETE,
+                    Collections.emptyMap());
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    private boolean supports(Object entity) {
+        return entity instanceof Customer || entity instanceof LinkMan;
+    }
+
+    private void record(EventSource session, EntityPersister persister, Serializable id, String eventType,
+                        Map<String, Object> changes) {
+        List<OutboxEvent> events = pending.get(session);
+        if (events == null) {
+            events = new ArrayList<>();
+            pending.put(session, events);
+            session.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) this::writePending);
+            session.getActionQueue().registerProcess(
+                    (AfterTransactionCompletionProcess) (success, s) -> pending.remove(s));
+        }
+        events.add(new OutboxEvent(persister.getMappedClass().getSimpleName(), (Long) id, eventType, toJson(changes)));
+    }
+
+    private void writePending(SharedSessionContractImplementor session) {
+        List<OutboxEvent> events = pending.remove(session);
+        if (events != null) {
+            session.doWork(connection -> outboxWriter.write(connection, events));
+        }
+    }
+
+    /**
+     * 取出需要记录的字段：集合属性不记录，关联的客户只记录custId
+     * @param properties 需要记录的属性下标，为null时记录全部
+     * @param keepNull 是否记录值为null的字段（修改时置空也是一种变化）
+     */
+    private Map<String, Object> changes(EntityPersister persister, Object[] state, int[] properties, boolean keepNull) {
+        String[] names = persister.getPropertyNames();
+        if (properties == null) {
+            properties = new int[names.length];
+            for (int i = 0; i < names.length; i++) {
+                properties[i] = i;
+            }
+        }
+        Map<String, Object> changes = new LinkedHashMap<>();
+        for (int i : properties) {
+            Object value = state[i];
+            if (value instanceof Collection) {
+                continue;
+            }
+            if ("customer".equals(names[i])) {
+                changes.put("custId", EntityStates.customerId(value));
+            } else if (value != null || keepNull) {
+                changes.put(names[i], value);
+            }
+        }
+        return changes;
+    }
+
+    private String toJson(Map<String, Object> changes) {
+        try {
+            return objectMapper.writeValueAsString(changes);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("发件箱事件序列化失败", e);
+        }
+    }
+}
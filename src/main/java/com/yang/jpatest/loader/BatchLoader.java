@@ -0,0 +1,173 @@
+package com.yang.jpatest.loader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 把一个时间窗口内收到的单key查询合并为一次多key查询
+ *      第一个key到达时开始计时，窗口结束或key数达到maxBatch时执行批量查询，
+ *      批量查询结果中没有的key得到null；同一批中重复的key共享一个结果。
+ *      计时器只负责把批次交给loadExecutor，慢查询不会推迟其他批次的窗口；
+ *      批量查询抛出任何异常（包括Error）时，这一批的所有future都以该异常结束，close后未完成的future以IllegalStateException结束
+ *
+ * @author ywq
+ */
+public class BatchLoader<K, V> {
+
+    private final Function<Set<K>, Map<K, V>> batchFunction;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final Executor loadExecutor;
+
+    private final long windowMillis;
+
+    private final int maxBatch;
+
+    private final Object lock = new Object();
+
+    private Map<K, CompletableFuture<V>> pending = new LinkedHashMap<>();
+
+    private boolean closed;
+
+    /**
+     * 等待窗口和已经交给loadExecutor、尚未完成的future
+     */
+    private final Set<CompletableFuture<V>> unfinished = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong batches = new AtomicLong();
+
+    private final AtomicLong keys = new AtomicLong();
+
+    /**
+     * @param scheduler 窗口计时
+     * @param loadExecutor 执行批量查询
+     */
+    public BatchLoader(Function<Set<K>, Map<K, V>> batchFunction, ScheduledExecutorService scheduler,
+                       Executor loadExecutor, long windowMillis, int maxBatch) {
+        this.batchFunction = batchFunction;
+        this.scheduler = scheduler;
+        this.loadExecutor = loadExecutor;
+        this.windowMillis = windowMillis;
+        this.maxBatch = Math.max(1, maxBatch);
+    }
+
+    public CompletableFuture<V> load(K key) {
+        CompletableFuture<V> future;
+        Map<K, CompletableFuture<V>> full = null;
+        boolean schedule = false;
+        synchronized (lock) {
+            if (closed) {
+                return closedFuture();
+            }
+            future = pending.get(key);
+            if (future != null) {
+                return future;
+            }
+            future = new CompletableFuture<>();
+            pending.put(key, future);
+            unfinished.add(future);
+            if (pending.size() >= maxBatch) {
+                full = pending;
+                pending = new LinkedHashMap<>();
+            } else if (pending.size() == 1) {
+                schedule = true;
+            }
+        }
+        CompletableFuture<V> created = future;
+        created.whenComplete((value, error) -> unfinished.remove(created));
+        if (full != null) {
+            submit(full);
+        } else if (schedule) {
+            try {
+                scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                flush();
+            }
+        }
+        return future;
+    }
+
+    /**
+     * 不再接受新的key，尚未执行和正在执行的批次的future以IllegalStateException结束
+     *      正在执行的批量查询不会被中断，结果被丢弃
+     */
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            pending = new LinkedHashMap<>();
+        }
+        IllegalStateException error = new IllegalStateException("BatchLoader已关闭");
+        for (CompletableFuture<V> future : new ArrayList<>(unfinished)) {
+            future.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * 平均每批的key数
+     */
+    public double getAverageBatchSize() {
+        long count = batches.get();
+        return count == 0 ? 0 : (double) keys.get() / count;
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    private void flush() {
+        Map<K, CompletableFuture<V>> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+        submit(batch);
+    }
+
+    private void submit(Map<K, CompletableFuture<V>> batch) {
+        try {
+            loadExecutor.execute(() -> dispatch(batch));
+        } catch (RejectedExecutionException e) {
+            fail(batch, e);
+        }
+    }
+
+    private void dispatch(Map<K, CompletableFuture<V>> batch) {
+        batches.incrementAndGet();
+        keys.addAndGet(batch.size());
+        try {
+            Map<K, V> values = batchFunction.apply(Collections.unmodifiableSet(batch.keySet()));
+            for (Map.Entry<K, CompletableFuture<V>> entry : batch.entrySet()) {
+                entry.getValue().complete(values.get(entry.getKey()));
+            }
+        } catch (Throwable e) {
+            fail(batch, e);
+        }
+    }
+
+    private void fail(Map<K, CompletableFuture<V>> batch, Throwable error) {
+        for (CompletableFuture<V> future : batch.values()) {
+            future.completeExceptionally(error);
+        }
+    }
+
+    private static <V> CompletableFuture<V> closedFuture() {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        future.completeExceptionally(new IllegalStateException("BatchLoader已关闭"));
+        return future;
+    }
+}
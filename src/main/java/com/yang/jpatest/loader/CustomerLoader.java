@@ -0,0 +1,324 @@
+package com.yang.jpatest.loader;
+
+import com.yang.jpatest.admission.AdmissionControlAspect;
+import com.yang.jpatest.admission.Bulkhead;
+import com.yang.jpatest.admission.CostClass;
+import com.yang.jpatest.dao.CustomerRepository;
+import com.yang.jpatest.entity.Customer;
+import com.yang.jpatest.event.CustomerBulkChangedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 服务层的客户查询合并
+ *      1.近端缓存：按id、名称、查询key缓存最近读到的客户，容量和存活时间（jpatest.loader.cache-ttl）有限，
+ *        客户的增删改由CustomerCacheListener、仓库的批量更新/删除、批处理和导入在提交后失效。
+ *        缓存在本进程内共享，不是按请求划分的：失效只覆盖本实例内的写入路径，
+ *        其他实例或应用之外（手工SQL、其他系统）的修改最多在存活时间内读到旧值；cache-ttl为0时不缓存
+ *      2.单飞：同一个key正在查询时，后到的调用方等待同一个结果
+ *      3.批量：按id的查询在很短的窗口内收集起来，用一条IN查询取回。
+ *        按名称的查询不批量：cust_name的排序规则不区分大小写、重音，IN查询的结果无法在Java中准确分回给各个名称，
+ *        每个名称单独调用CustomerRepository.findByCustName，语义与仓库一致
+ *      缓存中的客户不直接交给调用方，每次返回一份副本，调用方修改副本不影响其他调用方；
+ *      副本脱离持久化上下文，不能访问linkmans。
+ *      当前线程处于事务中时直接查询数据库，保证能读到本事务中尚未提交的修改
+ *
+ * @author ywq
+ */
+@Component
+public class CustomerLoader {
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private AdmissionControlAspect admissionControlAspect;
+
+    @Value("${jpatest.loader.batch-window:2}")
+    private long batchWindow;
+
+    @Value("${jpatest.loader.max-batch:100}")
+    private int maxBatch;
+
+    @Value("${jpatest.loader.cache-size:1000}")
+    private int cacheSize;
+
+    @Value("${jpatest.loader.cache-ttl:5000}")
+    private long cacheTtl;
+
+    private ScheduledExecutorService scheduler;
+
+    private ExecutorService loadExecutor;
+
+    /**
+     * 等待批量查询（LIST级）、按名称查询（POINT级）和全表查询（HEAVY级）的最长时间：窗口 + 舱壁排队 + 查询超时
+     */
+    private long batchTimeout;
+
+    private long pointTimeout;
+
+    private long queryTimeout;
+
+    private BatchLoader<Long, Customer> idBatches;
+
+    private final SingleFlight<Long, Customer> idFlights = new SingleFlight<>();
+
+    private final SingleFlight<String, Customer> nameFlights = new SingleFlight<>();
+
+    private final SingleFlight<String, List<Customer>> queryFlights = new SingleFlight<>();
+
+    private NearCache<Long, Customer> idCache;
+
+    private NearCache<String, Customer> nameCache;
+
+    private NearCache<String, List<Customer>> queryCache;
+
+    /**
+     * 批量查询走LIST级舱壁，加载线程数与其并发上限相同，多出的线程只会在舱壁上排队
+     */
+    @PostConstruct
+    public void init() {
+        Bulkhead list = admissionControlAspect.getBulkhead(CostClass.LIST);
+        Bulkhead point = admissionControlAspect.getBulkhead(CostClass.POINT);
+        Bulkhead heavy = admissionControlAspect.getBulkhead(CostClass.HEAVY);
+        batchTimeout = batchWindow + list.getMaxWaitMillis() + list.getQueryTimeoutSeconds() * 1000L;
+        pointTimeout = point.getMaxWaitMillis() + point.getQueryTimeoutSeconds() * 1000L;
+        queryTimeout = heavy.getMaxWaitMillis() + heavy.getQueryTimeoutSeconds() * 1000L;
+        scheduler = Executors.newSingleThreadScheduledExecutor(daemon("customer-loader-timer"));
+        loadExecutor = Executors.newFixedThreadPool(list.getMaxConcurrent(), daemon("customer-loader"));
+        idBatches = new BatchLoader<>(this::loadByIds, scheduler, loadExecutor, batchWindow, maxBatch);
+        idCache = new NearCache<>(cacheSize, cacheTtl);
+        nameCache = new NearCache<>(cacheSize, cacheTtl);
+        queryCache = new NearCache<>(cacheSize, cacheTtl);
+    }
+
+    /**
+     * 先让等待中的调用方失败返回，再停止线程
+     */
+    @PreDestroy
+    public void destroy() {
+        idBatches.close();
+        scheduler.shutdownNow();
+        loadExecutor.shutdownNow();
+    }
+
+    public Customer findById(Long custId) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return customerRepository.findById(custId).orElse(null);
+        }
+        Customer cached = idCache.get(custId);
+        if (cached != null) {
+            return copy(cached);
+        }
+        return copy(join(idFlights.execute(custId, () -> {
+            long version = idCache.version();
+            return idBatches.load(custId).thenApply(customer -> {
+                idCache.put(custId, customer, version);
+                return customer;
+            });
+        }), batchTimeout));
+    }
+
+    /**
+     * 与CustomerRepository.findByCustName一致：没有时返回null，同名客户有多个时抛出IncorrectResultSizeDataAccessException
+     *      由单飞的第一个调用方在自己的线程上查询，异常同样交给等待同一结果的调用方
+     */
+    public Customer findByCustName(String custName) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return customerRepository.findByCustName(custName);
+        }
+        Customer cached = nameCache.get(custName);
+        if (cached != null) {
+            return copy(cached);
+        }
+        return copy(join(nameFlights.execute(custName, () -> {
+            long version = nameCache.version();
+            Customer customer = customerRepository.findByCustName(custName);
+            nameCache.put(custName, customer, version);
+            return CompletableFuture.completedFuture(customer);
+        }), pointTimeout));
+    }
+
+    /**
+     * @param key 能唯一代表查询条件的字符串，Specification本身无法比较是否相同
+     */
+    public List<Customer> findAll(String key, Specification<Customer> spec) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return customerRepository.findAll(spec);
+        }
+        List<Customer> cached = queryCache.get(key);
+        if (cached != null) {
+            return copy(cached);
+        }
+        return copy(join(queryFlights.execute(key, () -> {
+            long version = queryCache.version();
+            List<Customer> customers = Collections.unmodifiableList(customerRepository.findAll(spec));
+            queryCache.put(key, customers, version);
+            return CompletableFuture.completedFuture(customers);
+        }), queryTimeout));
+    }
+
+    /**
+     * 客户被修改或删除：立即失效，事务提交后再失效一次，丢弃提交前已经开始的查询结果
+     *      名称和查询条件无法反查到客户，一并清空
+     * @param custId 为null时失效全部
+     */
+    public void invalidate(Long custId) {
+        invalidate(custId == null ? null : Collections.singleton(custId));
+    }
+
+    /**
+     * @param custIds 为null时失效全部
+     */
+    public void invalidate(Collection<Long> custIds) {
+        invalidateNow(custIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    invalidateNow(custIds);
+                }
+            });
+        }
+    }
+
+    public void invalidateAll() {
+        invalidate((Collection<Long>) null);
+    }
+
+    /**
+     * 新增客户：按id的缓存不保存“不存在”，不受影响；
+     *      同名客户的新增会让按名称的查询从返回一个客户变为抛出异常，按名称和按查询条件缓存的结果一并失效
+     */
+    public void invalidateQueries() {
+        invalidateQueriesNow();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    invalidateQueriesNow();
+                }
+            });
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBulkChanged(CustomerBulkChangedEvent event) {
+        invalidateNow(null);
+    }
+
+    /**
+     * @param custIds 为null时失效全部
+     */
+    private void invalidateNow(Collection<Long> custIds) {
+        if (custIds == null) {
+            idCache.invalidateAll();
+            idFlights.forgetAll();
+        } else {
+            for (Long custId : custIds) {
+                idCache.invalidate(custId);
+                idFlights.forget(custId);
+            }
+        }
+        invalidateQueriesNow();
+    }
+
+    private void invalidateQueriesNow() {
+        nameCache.invalidateAll();
+        nameFlights.forgetAll();
+        queryCache.invalidateAll();
+        queryFlights.forgetAll();
+    }
+
+    private Map<Long, Customer> loadByIds(Set<Long> custIds) {
+        Map<Long, Customer> customers = new HashMap<>(custIds.size() * 2);
+        for (Customer customer : customerRepository.findAllById(custIds)) {
+            customers.put(customer.getCustId(), customer);
+        }
+        return customers;
+    }
+
+    /**
+     * 复制标量属性；linkmans沿用原对象中未初始化的集合，访问时和原对象一样抛出LazyInitializationException
+     */
+    private static Customer copy(Customer customer) {
+        if (customer == null) {
+            return null;
+        }
+        Customer copy = new Customer();
+        copy.setCustId(customer.getCustId());
+        copy.setCustName(customer.getCustName());
+        copy.setCustSource(customer.getCustSource());
+        copy.setCustIndustry(customer.getCustIndustry());
+        copy.setCustLevel(customer.getCustLevel());
+        copy.setCustAddress(customer.getCustAddress());
+        copy.setCustPhone(customer.getCustPhone());
+        copy.setLinkmans(customer.getLinkmans());
+        return copy;
+    }
+
+    private static List<Customer> copy(List<Customer> customers) {
+        List<Customer> copies = new ArrayList<>(customers.size());
+        for (Customer customer : customers) {
+            copies.add(copy(customer));
+        }
+        return copies;
+    }
+
+    /**
+     * 等待超时时调用方收到QueryTimeoutException，查询本身继续执行，结果仍会写入缓存
+     */
+    private static <V> V join(CompletableFuture<V> future, long timeoutMillis) {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new QueryTimeoutException("等待客户查询超过" + timeoutMillis + "ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryTimeoutException("等待客户查询时被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("客户查询失败", cause);
+        }
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicInteger threads = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
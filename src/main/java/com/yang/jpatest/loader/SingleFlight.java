@@ -0,0 +1,70 @@
+package com.yang.jpatest.loader;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 相同key的并发调用合并为一次：第一个调用方发起，执行期间到达的调用方共享同一个结果
+ *      调用完成后立即移除，不缓存结果
+ *
+ * @author ywq
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong shared = new AtomicLong();
+
+    /**
+     * @param call 没有进行中的调用时执行，可以同步执行完后返回已完成的future
+     */
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            shared.incrementAndGet();
+            return existing;
+        }
+        CompletableFuture<V> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+        }
+        result.whenComplete((value, error) -> {
+            inFlight.remove(key, created);
+            if (error != null) {
+                created.completeExceptionally(error);
+            } else {
+                created.complete(value);
+            }
+        });
+        return created;
+    }
+
+    /**
+     * 数据被修改后调用，之后到达的调用方不再共享修改前发起的调用
+     */
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    public void forgetAll() {
+        inFlight.clear();
+    }
+
+    /**
+     * 共享了其他调用结果的次数
+     */
+    public long getShared() {
+        return shared.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,53 @@
+package com.yang.jpatest.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yang.jpatest.entity.OutboxEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * 以JSON Lines格式追加写入本地文件的投递目标
+ *
+ * @author ywq
+ */
+@Component
+@ConditionalOnProperty(name = "jpatest.outbox.sink", havingValue = "file")
+public class FileOutboxSink implements OutboxSink {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${jpatest.outbox.file:./logs/outbox/events.log}")
+    private String file;
+
+    @Override
+    public synchronized void publish(List<OutboxEvent> events) {
+        Path path = Paths.get(file);
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (OutboxEvent event : events) {
+                    writer.write(objectMapper.writeValueAsString(event));
+                    writer.newLine();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入发件箱文件失败: " + file, e);
+        }
+    }
+}
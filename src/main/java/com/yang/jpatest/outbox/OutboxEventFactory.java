@@ -0,0 +1,92 @@
+package com.yang.jpatest.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yang.jpatest.entity.Customer;
+import com.yang.jpatest.entity.LinkMan;
+import com.yang.jpatest.entity.OutboxEvent;
+import com.yang.jpatest.listener.EntityStates;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 为不经过Hibernate事件的写入路径（JDBC批量写入、无状态会话、JPQL/原生SQL更新）构造发件箱事件
+ *      payload为实体的全部非空字段，删除事件为空对象，格式与OutboxListener一致
+ *
+ * @author ywq
+ */
+@Component
+public class OutboxEventFactory {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public OutboxEvent customer(String eventType, Customer c) {
+        if (OutboxEvent.DELETE.equals(eventType)) {
+            return create("Customer", c.getCustId(), eventType, Collections.emptyMap());
+        }
+        Map<String, Object> payload = new LinkedHashMap<>();
+        putIfNotNull(payload, "custName", c.getCustName());
+        putIfNotNull(payload, "custSource", c.getCustSource());
+        putIfNotNull(payload, "custIndustry", c.getCustIndustry());
+        putIfNotNull(payload, "custLevel", c.getCustLevel());
+        putIfNotNull(payload, "custAddress", c.getCustAddress());
+        putIfNotNull(payload, "custPhone", c.getCustPhone());
+        return create("Customer", c.getCustId(), eventType, payload);
+    }
+
+    /**
+     * 只包含变化字段的修改事件（JPQL/原生SQL更新），值为null的字段同样记录
+     */
+    public OutboxEvent customerUpdate(Long custId, Map<String, Object> changes) {
+        return create("Customer", custId, OutboxEvent.UPDATE, changes);
+    }
+
+    /**
+     * 批量删除只知道客户id，格式与customer(DELETE, c)一致
+     */
+    public OutboxEvent customerDelete(Long custId) {
+        return create("Customer", custId, OutboxEvent.DELETE, Collections.emptyMap());
+    }
+
+    public OutboxEvent linkMan(String eventType, LinkMan l) {
+        return linkMan(eventType, l, EntityStates.customerId(l.getCustomer()));
+    }
+
+    /**
+     * @param custId 所属客户id（JDBC写入时LinkMan上没有customer对象）
+     */
+    public OutboxEvent linkMan(String eventType, LinkMan l, Long custId) {
+        if (OutboxEvent.DELETE.equals(eventType)) {
+            return create("LinkMan", l.getLkmId(), eventType, Collections.emptyMap());
+        }
+        Map<String, Object> payload = new LinkedHashMap<>();
+        putIfNotNull(payload, "lkmName", l.getLkmName());
+        putIfNotNull(payload, "lkmGender", l.getLkmGender());
+        putIfNotNull(payload, "lkmPhone", l.getLkmPhone());
+        putIfNotNull(payload, "lkmMobile", l.getLkmMobile());
+        putIfNotNull(payload, "lkmEmail", l.getLkmEmail());
+        putIfNotNull(payload, "lkmPosition", l.getLkmPosition());
+        putIfNotNull(payload, "lkmMemo", l.getLkmMemo());
+        payload.put("custId", custId);
+        return create("LinkMan", l.getLkmId(), eventType, payload);
+    }
+
+    private OutboxEvent create(String aggregateType, Long id, String eventType, Map<String, Object> payload) {
+        try {
+            return new OutboxEvent(aggregateType, id, eventType, objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("发件箱事件序列化失败", e);
+        }
+    }
+
+    private static void putIfNotNull(Map<String, Object> payload, String name, Object value) {
+        if (value != null) {
+            payload.put(name, value);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.yang.jpatest.outbox;
+
+import com.yang.jpatest.dao.OutboxEventDao;
+import com.yang.jpatest.entity.OutboxEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+
+/**
+ * 发件箱中继：定时按id顺序分批取出事件投递到OutboxSink，投递成功后在同一事务内删除
+ *      投递失败时事务回滚，事件保留到下次重试（至少一次投递，消费方需按id幂等）
+ *      只按id列表删除，避免误删其他事务刚写入、尚未提交的事件
+ *      多实例部署时只应有一个实例开启中继（jpatest.outbox.relay-enabled）
+ *
+ * @author ywq
+ */
+@Slf4j
+@Lazy(false)
+@Component
+public class OutboxRelay {
+
+    @Autowired
+    private OutboxEventDao outboxEventDao;
+
+    @Autowired
+    private OutboxSink outboxSink;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${jpatest.outbox.batch-size:500}")
+    private int batchSize;
+
+    @Value("${jpatest.outbox.relay-enabled:true}")
+    private boolean enabled;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${jpatest.outbox.relay-interval:1000}")
+    public void relay() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int published;
+            do {
+                published = drainBatch();
+            } while (published == batchSize);
+        } catch (RuntimeException e) {
+            log.warn("发件箱事件投递失败，稍后重试", e);
+        }
+    }
+
+    /**
+     * 投递一批事件
+     * @return 本批事件数
+     */
+    public int drainBatch() {
+        Integer count = transactionTemplate.execute(status -> {
+            List<OutboxEvent> events = outboxEventDao.findByOrderByIdAsc(PageRequest.of(0, batchSize));
+            if (events.isEmpty()) {
+                return 0;
+            }
+            outboxSink.publish(events);
+            outboxEventDao.deleteInBatch(events);
+            return events.size();
+        });
+        return count == null ? 0 : count;
+    }
+}
@@ -0,0 +1,20 @@
+package com.yang.jpatest.outbox;
+
+import com.yang.jpatest.entity.OutboxEvent;
+
+import java.util.List;
+
+/**
+ * 发件箱事件的投递目标（消息队列、文件等），由jpatest.outbox.sink选择实现
+ *      publish抛出异常时这一批事件不会从发件箱删除，下次重新投递（至少一次）
+ *
+ * @author ywq
+ */
+public interface OutboxSink {
+
+    /**
+     * 投递一批事件，events按id升序
+     * @param events
+     */
+    void publish(List<OutboxEvent> events);
+}
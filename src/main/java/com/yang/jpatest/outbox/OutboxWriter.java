@@ -0,0 +1,40 @@
+package com.yang.jpatest.outbox;
+
+import com.yang.jpatest.entity.OutboxEvent;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * 用JDBC批量写入发件箱
+ *      直接使用业务事务的连接，事件与业务数据一起提交或回滚
+ *
+ * @author ywq
+ */
+@Component
+public class OutboxWriter {
+
+    private static final String INSERT_SQL = "INSERT INTO cst_outbox " +
+            "(aggregate_type, aggregate_id, event_type, payload, created_at) VALUES (?, ?, ?, ?, ?)";
+
+    public void write(Connection connection, List<OutboxEvent> events) throws SQLException {
+        if (events.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement ps = connection.prepareStatement(INSERT_SQL)) {
+            for (OutboxEvent event : events) {
+                ps.setString(1, event.getAggregateType());
+                ps.setLong(2, event.getAggregateId());
+                ps.setString(3, event.getEventType());
+                ps.setString(4, event.getPayload());
+                ps.setTimestamp(5, new Timestamp(event.getCreatedAt().getTime()));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.yang.jpatest.service;
+
+import com.yang.jpatest.aggregate.CustomerAggregates;
+
+import java.util.Map;
+
+/**
+ * 客户汇总统计
+ *      统计数据保存在内存中，由实体事件增量维护，并定时与数据库对账，
+ *      查询代价只与分组数有关，不再对全表做GROUP BY
+ *
+ * @author ywq
+ */
+public interface CustomerAggregateService {
+
+    /**
+     * 按行业统计客户数
+     */
+    Map<String, Long> countByIndustry();
+
+    /**
+     * 按级别统计客户数
+     */
+    Map<String, Long> countByLevel();
+
+    /**
+     * 按来源统计客户数
+     */
+    Map<String, Long> countBySource();
+
+    /**
+     * 统计某个客户的联系人数
+     */
+    long countLinkMans(Long custId);
+
+    /**
+     * 统计每个客户的联系人数（没有联系人的客户不在结果中）
+     */
+    Map<Long, Long> countLinkMansByCustomer();
+
+    /**
+     * 累加增量，存在事务时在提交后生效，回滚则丢弃
+     */
+    void apply(CustomerAggregates delta);
+
+    /**
+     * 标记统计数据已不可信（批量修改等），在事务提交后重新对账
+     */
+    void markStale();
+
+    /**
+     * 从数据库重新统计，替换内存中的数据
+     */
+    void reconcile();
+}
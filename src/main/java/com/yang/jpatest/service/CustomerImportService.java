@@ -0,0 +1,25 @@
+package com.yang.jpatest.service;
+
+import com.yang.jpatest.importer.ImportProgress;
+
+import java.nio.file.Path;
+
+/**
+ * 客户、联系人CSV批量导入
+ *
+ * 客户文件表头: cust_key,cust_name,cust_source,cust_industry,cust_level,cust_address,cust_phone
+ * 联系人文件表头: cust_key,lkm_name,lkm_gender,lkm_phone,lkm_mobile,lkm_email,lkm_position,lkm_memo
+ * cust_key是来源系统中客户的标识，只用于导入时把联系人关联到客户，不会保存
+ *
+ * @author ywq
+ */
+public interface CustomerImportService {
+
+    /**
+     * 先导入客户再导入联系人，中断后用同样的文件（内容未修改、分块大小不变）再次调用会从检查点继续
+     * @param customersCsv 客户文件
+     * @param linkMansCsv 联系人文件，可以为null
+     * @return 导入进度统计
+     */
+    ImportProgress importCsv(Path customersCsv, Path linkMansCsv);
+}
@@ -2,6 +2,7 @@ package com.yang.jpatest.service;
 
 import com.yang.jpatest.entity.Customer;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.jaxb.SpringDataJaxb;
 
@@ -15,8 +16,31 @@ public interface CustomerService {
 
     void update(Customer customer);
 
+    /**
+     * 成组保存客户及其联系人（customer.getLinkmans()），按表拼成多行INSERT，
+     *      保存后主键回填到传入的对象上，对象不进入持久化上下文
+     * @param customers 新客户，不能已有主键
+     */
+    void saveAggregates(List<Customer> customers);
+
     List<Customer> findAll();
 
+    /**
+     * 以下查询经过CustomerLoader：合并并发的相同查询、按id批量查询、短时间缓存（本进程内，最多读到cache-ttl之前的数据）；
+     * 不在事务中时每次返回缓存对象的副本，可以修改，但不能访问linkmans
+     */
+    Customer findById(Long custId);
+
+    /**
+     * 没有时返回null，同名客户有多个时抛出IncorrectResultSizeDataAccessException
+     */
+    Customer findByCustName(String custName);
+
+    /**
+     * @param key 唯一代表查询条件的字符串，作为合并和缓存的依据
+     */
+    List<Customer> findAll(String key, Specification<Customer> spec);
+
     List<Customer> findSort();
 
     Object findPage(Pageable pageable);
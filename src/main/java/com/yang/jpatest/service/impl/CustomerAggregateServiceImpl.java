@@ -0,0 +1,260 @@
+package com.yang.jpatest.service.impl;
+
+import com.yang.jpatest.aggregate.CustomerAggregates;
+import com.yang.jpatest.aggregate.CustomerAggregates.Dimension;
+import com.yang.jpatest.dao.CustomerRepository;
+import com.yang.jpatest.dao.LinkManDao;
+import com.yang.jpatest.event.CustomerBulkChangedEvent;
+import com.yang.jpatest.service.CustomerAggregateService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Slf4j
+@Lazy(false)
+@Service
+public class CustomerAggregateServiceImpl implements CustomerAggregateService {
+
+    private static final String SNAPSHOT_QUERY = "SELECT 1 FROM cst_customer LIMIT 1";
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private LinkManDao linkManDao;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final AtomicReference<CustomerAggregates> aggregates = new AtomicReference<>(new CustomerAggregates());
+
+    private final ReentrantReadWriteLock commitLock = new ReentrantReadWriteLock();
+
+    private final Object mergeLock = new Object();
+
+    private final Object reconcileLock = new Object();
+
+    /**
+     * 对账期间提交的增量，不在对账时为null
+     */
+    private List<CustomerAggregates> replay;
+
+    private final AtomicBoolean reconcilePending = new AtomicBoolean();
+
+    private final ExecutorService reconcileExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "customer-aggregate-reconcile");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        transactionTemplate.setReadOnly(true);
+    }
+
+    @Override
+    public Map<String, Long> countByIndustry() {
+        return aggregates.get().getCustomerCounts(Dimension.INDUSTRY);
+    }
+
+    @Override
+    public Map<String, Long> countByLevel() {
+        return aggregates.get().getCustomerCounts(Dimension.LEVEL);
+    }
+
+    @Override
+    public Map<String, Long> countBySource() {
+        return aggregates.get().getCustomerCounts(Dimension.SOURCE);
+    }
+
+    @Override
+    public long countLinkMans(Long custId) {
+        return aggregates.get().getLinkManCount(custId);
+    }
+
+    @Override
+    public Map<Long, Long> countLinkMansByCustomer() {
+        return aggregates.get().getLinkManCounts();
+    }
+
+    /**
+     * 提交前加读锁、提交完成后释放，对账建立快照时加写锁，
+     * 保证每个事务的提交要么在快照之前且增量已累加，要么在快照之后且增量会被重放。
+     * 实体监听器大多在提交时的刷新中调用这里，FlushBeforeCommitTransactionManager把这次刷新提前到beforeCommit之前，
+     * 否则这里注册的同步收不到beforeCommit，不加锁就提交
+     */
+    @Override
+    public void apply(CustomerAggregates delta) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            merge(delta);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+            private boolean locked;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                commitLock.readLock().lock();
+                locked = true;
+            }
+
+            @Override
+            public void afterCommit() {
+                merge(delta);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (locked) {
+                    commitLock.readLock().unlock();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void markStale() {
+        afterCommit(this::reconcileAsync);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBulkChanged(CustomerBulkChangedEvent event) {
+        log.info("客户数据被批量修改({})，重新统计汇总数据", event.getOrigin());
+        reconcileAsync();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        reconcile();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        reconcileExecutor.shutdownNow();
+    }
+
+    /**
+     * 对账：用GROUP BY重新统计，纠正批量修改、外部写入等未经过实体事件的变化
+     *      在新的可重复读只读事务中统计，统计期间提交的增量在替换前重放到新数据上
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${jpatest.aggregate.reconcile-interval:600000}",
+            initialDelayString = "${jpatest.aggregate.reconcile-interval:600000}")
+    public void reconcile() {
+        synchronized (reconcileLock) {
+            try {
+                CustomerAggregates fresh = transactionTemplate.execute(status -> {
+                    commitLock.writeLock().lock();
+                    try {
+                        // 可重复读的快照在第一次读取时建立
+                        entityManager.createNativeQuery(SNAPSHOT_QUERY).getResultList();
+                        synchronized (mergeLock) {
+                            replay = new ArrayList<>();
+                        }
+                    } finally {
+                        commitLock.writeLock().unlock();
+                    }
+                    CustomerAggregates loaded = new CustomerAggregates();
+                    load(loaded, Dimension.INDUSTRY, customerRepository.countGroupByIndustry());
+                    load(loaded, Dimension.LEVEL, customerRepository.countGroupByLevel());
+                    load(loaded, Dimension.SOURCE, customerRepository.countGroupBySource());
+                    for (Object[] row : linkManDao.countGroupByCustomer()) {
+                        loaded.adjustLinkMans((Long) row[0], ((Number) row[1]).longValue());
+                    }
+                    return loaded;
+                });
+                synchronized (mergeLock) {
+                    for (CustomerAggregates delta : replay) {
+                        fresh.merge(delta);
+                    }
+                    aggregates.set(fresh);
+                }
+            } finally {
+                synchronized (mergeLock) {
+                    replay = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * 在后台线程对账，不占用提交事务的线程；已有等待中的对账时合并
+     */
+    private void reconcileAsync() {
+        if (!reconcilePending.compareAndSet(false, true)) {
+            return;
+        }
+        reconcileExecutor.execute(() -> {
+            reconcilePending.set(false);
+            try {
+                reconcile();
+            } catch (RuntimeException e) {
+                log.warn("客户汇总数据对账失败", e);
+            }
+        });
+    }
+
+    private void merge(CustomerAggregates delta) {
+        synchronized (mergeLock) {
+            aggregates.get().merge(delta);
+            if (replay != null) {
+                replay.add(delta);
+            }
+        }
+    }
+
+    private void load(CustomerAggregates target, Dimension dimension, List<Object[]> rows) {
+        for (Object[] row : rows) {
+            target.adjustCustomers(dimension, (String) row[0], ((Number) row[1]).longValue());
+        }
+    }
+
+    /**
+     * 有事务时注册到事务提交之后执行，没有事务时立即执行
+     */
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,307 @@
+package com.yang.jpatest.service.impl;
+
+import com.yang.jpatest.batch.IdAllocator;
+import com.yang.jpatest.bloom.CustomerMembershipIndex;
+import com.yang.jpatest.dict.DictionaryRegistry;
+import com.yang.jpatest.entity.Customer;
+import com.yang.jpatest.entity.LinkMan;
+import com.yang.jpatest.entity.OutboxEvent;
+import com.yang.jpatest.event.CustomerBulkChangedEvent;
+import com.yang.jpatest.importer.*;
+import com.yang.jpatest.loader.CustomerLoader;
+import com.yang.jpatest.outbox.OutboxEventFactory;
+import com.yang.jpatest.outbox.OutboxWriter;
+import com.yang.jpatest.service.CustomerImportService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 导入不经过JPA：每个分块用JDBC批量插入（配合rewriteBatchedStatements合并为多行INSERT），
+ * 每个分块先由IdAllocator预留主键并显式写入，联系人在内存中按cust_key关联到客户主键
+ */
+@Slf4j
+@Service
+public class CustomerImportServiceImpl implements CustomerImportService {
+
+    private static final String INSERT_CUSTOMER = "INSERT INTO cst_customer " +
+            "(cust_id, cust_name, cust_source_code, cust_industry_code, cust_level_code, cust_address, cust_phone) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_LINKMAN = "INSERT INTO cst_linkman " +
+            "(lkm_id, lkm_name, lkm_gender_code, lkm_phone, lkm_mobile, lkm_email, lkm_position, lkm_memo, lkm_cust_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String LOAD_CUSTOMER = "LOAD DATA LOCAL INFILE '%s' INTO TABLE cst_customer " +
+            "CHARACTER SET utf8mb4 FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' " +
+            "(cust_id, cust_name, cust_source_code, cust_industry_code, cust_level_code, cust_address, cust_phone)";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private OutboxWriter outboxWriter;
+
+    @Autowired
+    private OutboxEventFactory outboxEventFactory;
+
+    @Autowired
+    private DictionaryRegistry dictionaryRegistry;
+
+    @Autowired
+    private CustomerMembershipIndex customerMembershipIndex;
+
+    @Autowired
+    private IdAllocator idAllocator;
+
+    @Autowired
+    private CustomerLoader customerLoader;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${jpatest.import.chunk-size:5000}")
+    private int chunkSize;
+
+    @Value("${jpatest.import.parsers:2}")
+    private int parsers;
+
+    @Value("${jpatest.import.writers:4}")
+    private int writers;
+
+    @Value("${jpatest.import.queue-capacity:8}")
+    private int queueCapacity;
+
+    @Value("${jpatest.import.load-data:false}")
+    private boolean loadData;
+
+    @Override
+    public ImportProgress importCsv(Path customersCsv, Path linkMansCsv) {
+        ImportProgress progress = new ImportProgress();
+        Map<String, Long> keys = new ConcurrentHashMap<>();
+        ImportCheckpoint customerCheckpoint = new JdbcImportCheckpoint(dataSource, customersCsv, chunkSize);
+        customerCheckpoint.loadKeys(keys);
+        try {
+            /* 没有联系人文件时不需要客户id，可以走LOAD DATA快速通道 */
+            ChunkWriter<Customer> customerWriter = loadData && linkMansCsv == null
+                    ? this::loadCustomers : this::insertCustomers;
+            run(new ChunkPipeline<Customer>("customer", dataSource, this::mapCustomer, customerWriter,
+                    customerCheckpoint, progress, keys), customersCsv);
+            if (linkMansCsv != null) {
+                ImportCheckpoint linkManCheckpoint = new JdbcImportCheckpoint(dataSource, linkMansCsv, chunkSize);
+                run(new ChunkPipeline<LinkMan>("linkman", dataSource, this::mapLinkMan,
+                        (connection, rows) -> insertLinkMans(connection, rows, keys, progress),
+                        linkManCheckpoint, progress, null), linkMansCsv);
+                linkManCheckpoint.delete();
+            }
+            customerCheckpoint.delete();
+        } finally {
+            eventPublisher.publishEvent(new CustomerBulkChangedEvent(this, "CustomerImportService.importCsv"));
+        }
+        return progress;
+    }
+
+    private <T> void run(ChunkPipeline<T> pipeline, Path csv) {
+        try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+            pipeline.chunkSize(chunkSize).parsers(parsers).writers(writers).queueCapacity(queueCapacity)
+                    .afterCommit(customerLoader::invalidateQueries)
+                    .run(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取导入文件失败: " + csv, e);
+        }
+    }
+
+    private ImportRow<Customer> mapCustomer(CsvRecord record) {
+        Customer customer = new Customer();
+        customer.setCustName(record.get("cust_name"));
+        customer.setCustSource(record.get("cust_source"));
+        customer.setCustIndustry(record.get("cust_industry"));
+        customer.setCustLevel(record.get("cust_level"));
+        customer.setCustAddress(record.get("cust_address"));
+        customer.setCustPhone(record.get("cust_phone"));
+        if (customer.getCustName() == null) {
+            throw new IllegalArgumentException("cust_name为空");
+        }
+        return new ImportRow<>(record.get("cust_key"), customer);
+    }
+
+    private ImportRow<LinkMan> mapLinkMan(CsvRecord record) {
+        LinkMan linkMan = new LinkMan();
+        linkMan.setLkmName(record.get("lkm_name"));
+        linkMan.setLkmGender(record.get("lkm_gender"));
+        linkMan.setLkmPhone(record.get("lkm_phone"));
+        linkMan.setLkmMobile(record.get("lkm_mobile"));
+        linkMan.setLkmEmail(record.get("lkm_email"));
+        linkMan.setLkmPosition(record.get("lkm_position"));
+        linkMan.setLkmMemo(record.get("lkm_memo"));
+        return new ImportRow<>(record.get("cust_key"), linkMan);
+    }
+
+    private ChunkResult insertCustomers(Connection connection, List<ImportRow<Customer>> rows) throws SQLException {
+        Map<String, Long> written = new HashMap<>();
+        List<OutboxEvent> events = new ArrayList<>(rows.size());
+        long id = idAllocator.reserve(IdAllocator.CUSTOMER, rows.size());
+        try (PreparedStatement ps = connection.prepareStatement(INSERT_CUSTOMER)) {
+            for (ImportRow<Customer> row : rows) {
+                Customer c = row.getEntity();
+                c.setCustId(id++);
+                ps.setLong(1, c.getCustId());
+                ps.setString(2, c.getCustName());
+                ps.setObject(3, dictionaryRegistry.encode(DictionaryRegistry.CUST_SOURCE, c.getCustSource()), Types.INTEGER);
+                ps.setObject(4, dictionaryRegistry.encode(DictionaryRegistry.CUST_INDUSTRY, c.getCustIndustry()), Types.INTEGER);
+                ps.setObject(5, dictionaryRegistry.encode(DictionaryRegistry.CUST_LEVEL, c.getCustLevel()), Types.INTEGER);
+                ps.setString(6, c.getCustAddress());
+                ps.setString(7, c.getCustPhone());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        for (ImportRow<Customer> row : rows) {
+            Customer c = row.getEntity();
+            if (row.getKey() != null) {
+                written.put(row.getKey(), c.getCustId());
+            }
+            events.add(outboxEventFactory.customer(OutboxEvent.INSERT, c));
+            customerMembershipIndex.add(c.getCustId(), c.getCustPhone());
+        }
+        outboxWriter.write(connection, events);
+        return new ChunkResult(rows.size(), written);
+    }
+
+    /**
+     * cust_key无法解析的联系人不导入，计入unresolved，不计入写入行数
+     */
+    private ChunkResult insertLinkMans(Connection connection, List<ImportRow<LinkMan>> rows,
+                                             Map<String, Long> keys, ImportProgress progress) throws SQLException {
+        List<LinkMan> inserted = new ArrayList<>(rows.size());
+        List<Long> custIds = new ArrayList<>(rows.size());
+        for (ImportRow<LinkMan> row : rows) {
+            LinkMan l = row.getEntity();
+            Long custId = row.getKey() == null ? null : keys.get(row.getKey());
+            if (custId == null) {
+                progress.rowUnresolved();
+                log.warn("联系人{}的cust_key无法解析，未导入: {}", l.getLkmName(), row.getKey());
+                continue;
+            }
+            inserted.add(l);
+            custIds.add(custId);
+        }
+        if (inserted.isEmpty()) {
+            return ChunkResult.of(0);
+        }
+        long id = idAllocator.reserve(IdAllocator.LINKMAN, inserted.size());
+        List<OutboxEvent> events = new ArrayList<>(inserted.size());
+        try (PreparedStatement ps = connection.prepareStatement(INSERT_LINKMAN)) {
+            for (int i = 0; i < inserted.size(); i++) {
+                LinkMan l = inserted.get(i);
+                l.setLkmId(id++);
+                ps.setLong(1, l.getLkmId());
+                ps.setString(2, l.getLkmName());
+                ps.setObject(3, dictionaryRegistry.encode(DictionaryRegistry.LKM_GENDER, l.getLkmGender()), Types.INTEGER);
+                ps.setString(4, l.getLkmPhone());
+                ps.setString(5, l.getLkmMobile());
+                ps.setString(6, l.getLkmEmail());
+                ps.setString(7, l.getLkmPosition());
+                ps.setString(8, l.getLkmMemo());
+                ps.setLong(9, custIds.get(i));
+                ps.addBatch();
+                events.add(outboxEventFactory.linkMan(OutboxEvent.INSERT, l, custIds.get(i)));
+            }
+            ps.executeBatch();
+        }
+        outboxWriter.write(connection, events);
+        return ChunkResult.of(inserted.size());
+    }
+
+    /**
+     * LOAD DATA快速通道：分块写成临时TSV文件后由MySQL直接装载
+     * 需要在连接串中加上allowLoadLocalInfile=true，并开启服务端local_infile；
+     * 主键同样预先预留并写入文件，装载后照常写入发件箱事件、加入存在性索引
+     */
+    private ChunkResult loadCustomers(Connection connection, List<ImportRow<Customer>> rows) throws SQLException {
+        Map<String, Long> written = new HashMap<>();
+        List<OutboxEvent> events = new ArrayList<>(rows.size());
+        long id = idAllocator.reserve(IdAllocator.CUSTOMER, rows.size());
+        Path tsv = null;
+        try {
+            tsv = Files.createTempFile("cst_customer", ".tsv");
+            try (BufferedWriter writer = Files.newBufferedWriter(tsv, StandardCharsets.UTF_8)) {
+                for (ImportRow<Customer> row : rows) {
+                    Customer c = row.getEntity();
+                    c.setCustId(id++);
+                    writer.write(tsvLine(c.getCustId().toString(), c.getCustName(),
+                            code(DictionaryRegistry.CUST_SOURCE, c.getCustSource()),
+                            code(DictionaryRegistry.CUST_INDUSTRY, c.getCustIndustry()),
+                            code(DictionaryRegistry.CUST_LEVEL, c.getCustLevel()),
+                            c.getCustAddress(), c.getCustPhone()));
+                }
+            }
+            String path = tsv.toAbsolutePath().toString().replace('\\', '/').replace("'", "''");
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(String.format(LOAD_CUSTOMER, path));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入临时文件失败", e);
+        } finally {
+            if (tsv != null) {
+                try {
+                    Files.deleteIfExists(tsv);
+                } catch (IOException e) {
+                    log.warn("删除临时文件失败: {}", tsv);
+                }
+            }
+        }
+        for (ImportRow<Customer> row : rows) {
+            Customer c = row.getEntity();
+            if (row.getKey() != null) {
+                written.put(row.getKey(), c.getCustId());
+            }
+            events.add(outboxEventFactory.customer(OutboxEvent.INSERT, c));
+            customerMembershipIndex.add(c.getCustId(), c.getCustPhone());
+        }
+        outboxWriter.write(connection, events);
+        return new ChunkResult(rows.size(), written);
+    }
+
+    private String code(String type, String value) {
+        Integer code = dictionaryRegistry.encode(type, value);
+        return code == null ? null : code.toString();
+    }
+
+    private static String tsvLine(String... values) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                line.append('\t');
+            }
+            String value = values[i];
+            if (value == null) {
+                line.append("\\N");
+                continue;
+            }
+            for (int j = 0; j < value.length(); j++) {
+                char ch = value.charAt(j);
+                if (ch == '\\' || ch == '\t' || ch == '\n') {
+                    line.append('\\').append(ch == '\t' ? 't' : ch == '\n' ? 'n' : '\\');
+                } else if (ch != '\r') {
+                    line.append(ch);
+                }
+            }
+        }
+        return line.append('\n').toString();
+    }
+}
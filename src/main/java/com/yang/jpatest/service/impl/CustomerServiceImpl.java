@@ -1,9 +1,22 @@
 package com.yang.jpatest.service.impl;
 
+import com.yang.jpatest.aggregate.CustomerAggregates;
+import com.yang.jpatest.aggregate.CustomerAggregates.Dimension;
+import com.yang.jpatest.batch.CustomerGraphInserter;
+import com.yang.jpatest.bloom.CustomerMembershipIndex;
 import com.yang.jpatest.dao.CustomerRepository;
 import com.yang.jpatest.entity.Customer;
+import com.yang.jpatest.entity.OutboxEvent;
+import com.yang.jpatest.event.CustomerBulkChangedEvent;
+import com.yang.jpatest.loader.CustomerLoader;
+import com.yang.jpatest.outbox.OutboxEventFactory;
+import com.yang.jpatest.outbox.OutboxWriter;
+import com.yang.jpatest.service.CustomerAggregateService;
 import com.yang.jpatest.service.CustomerService;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.jdbc.object.UpdatableSqlQuery;
@@ -16,8 +29,10 @@ import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.*;
+import java.util.Collections;
 import java.util.List;
 
+@Slf4j
 @Service
 public class CustomerServiceImpl implements CustomerService {
 
@@ -28,6 +43,27 @@ public class CustomerServiceImpl implements CustomerService {
     @PersistenceContext
     private EntityManager entityManager;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private CustomerMembershipIndex customerMembershipIndex;
+
+    @Autowired
+    private CustomerGraphInserter customerGraphInserter;
+
+    @Autowired
+    private CustomerLoader customerLoader;
+
+    @Autowired
+    private CustomerAggregateService customerAggregateService;
+
+    @Autowired
+    private OutboxEventFactory outboxEventFactory;
+
+    @Autowired
+    private OutboxWriter outboxWriter;
+
     @Transactional(rollbackFor = Exception.class)
     @Override
     public void save(Customer customer) {
@@ -58,15 +94,22 @@ public class CustomerServiceImpl implements CustomerService {
         customerRepository.save(customer);
         /*2.JPAQL语句修改*/
         Class clazz = customer.getClass();
-        String jpql = "UPDATE" + clazz.getName() + "tb SET tb.cust_name=:name " +
+        String jpql = "UPDATE " + clazz.getName() + " tb SET tb.custName=:name " +
                 "WHERE tb.custId =:id AND tb.custLevel =:custLevel";
         Query query = entityManager.createQuery(jpql);
         query.setParameter("id",customer.getCustId())
                 .setParameter("name",customer.getCustName())
                 .setParameter("custLevel",customer.getCustLevel());
-        query.executeUpdate();
-        /*3.SQL语句修改  重点在dao层上的@Query注解,
-        nativeQuery=true表示是原生SQL,nativeQuery=false表示不是原生SQL*/
+        int rows = query.executeUpdate();
+        /* 2绕过了实体事件，发件箱事件在这里维护；改名不改变id和电话，存在性索引不需要更新 */
+        if (rows > 0) {
+            OutboxEvent event = outboxEventFactory.customerUpdate(customer.getCustId(),
+                    Collections.singletonMap("custName", customer.getCustName()));
+            entityManager.unwrap(Session.class).doWork(connection ->
+                    outboxWriter.write(connection, Collections.singletonList(event)));
+        }
+        /*3.SQL语句修改  原来是dao层上的@Query(nativeQuery = true)，
+        现在由CustomerRepositoryCustomImpl执行，发件箱事件和查询缓存在仓库中维护*/
         Customer updateCustomer = customerRepository.update(customer);
         /*4.标准查询修改 */
         CriteriaBuilder cb = entityManager.getCriteriaBuilder();
@@ -77,6 +120,36 @@ public class CustomerServiceImpl implements CustomerService {
         update.where(cb.equal(root.get("custId"),customer.getCustId()));
         Query q = entityManager.createQuery(update);
         // entityManager.merge(customer);
+        customerLoader.invalidate(customer.getCustId());
+        /* 2、3、4 不经过实体生命周期事件，通知监听方在事务提交后自行校正 */
+        eventPublisher.publishEvent(new CustomerBulkChangedEvent(this, "CustomerService.update"));
+    }
+
+    /**
+     * 级联保存时每个客户、每个联系人各发一条INSERT，
+     * 这里绕过持久化上下文，在当前事务的连接上按表成组插入（主键由号段预留）；
+     * 没有经过实体事件，汇总数据的增量、存在性索引和查询缓存在这里直接维护
+     */
+    @Transactional(rollbackFor = Exception.class)
+    @Override
+    public void saveAggregates(List<Customer> customers) {
+        if (customers.isEmpty()) {
+            return;
+        }
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            int statements = customerGraphInserter.insert(connection, customers);
+            log.debug("成组保存{}个客户，执行INSERT {}条", customers.size(), statements);
+        });
+        CustomerAggregates delta = new CustomerAggregates();
+        for (Customer customer : customers) {
+            customerMembershipIndex.add(customer.getCustId(), customer.getCustPhone());
+            delta.adjustCustomers(Dimension.INDUSTRY, customer.getCustIndustry(), 1);
+            delta.adjustCustomers(Dimension.LEVEL, customer.getCustLevel(), 1);
+            delta.adjustCustomers(Dimension.SOURCE, customer.getCustSource(), 1);
+            delta.adjustLinkMans(customer.getCustId(), customer.getLinkmans().size());
+        }
+        customerAggregateService.apply(delta);
+        customerLoader.invalidateQueries();
     }
 
     @Override
@@ -84,6 +157,21 @@ public class CustomerServiceImpl implements CustomerService {
         return customerRepository.findAll();
     }
 
+    @Override
+    public Customer findById(Long custId) {
+        return customerLoader.findById(custId);
+    }
+
+    @Override
+    public Customer findByCustName(String custName) {
+        return customerLoader.findByCustName(custName);
+    }
+
+    @Override
+    public List<Customer> findAll(String key, Specification<Customer> spec) {
+        return customerLoader.findAll(key, spec);
+    }
+
     @Override
     public List<Customer> findSort() {
         return customerRepository.findAll(Sort.by(Sort.Direction.DESC, "cust_id"));
@@ -0,0 +1,25 @@
+-- 初始表结构，与实体映射一致；已由ddl-auto建好表的库会被baseline为版本1，不执行此脚本
+CREATE TABLE IF NOT EXISTS cst_customer (
+    cust_id       BIGINT       NOT NULL AUTO_INCREMENT,
+    cust_address  VARCHAR(255) NULL,
+    cust_industry VARCHAR(255) NULL,
+    cust_level    VARCHAR(255) NULL,
+    cust_name     VARCHAR(255) NULL,
+    cust_phone    VARCHAR(255) NULL,
+    cust_source   VARCHAR(255) NULL,
+    PRIMARY KEY (cust_id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS cst_linkman (
+    lkm_id       BIGINT       NOT NULL AUTO_INCREMENT,
+    lkm_email    VARCHAR(255) NULL,
+    lkm_gender   VARCHAR(255) NULL,
+    lkm_memo     VARCHAR(255) NULL,
+    lkm_mobile   VARCHAR(255) NULL,
+    lkm_name     VARCHAR(255) NULL,
+    lkm_phone    VARCHAR(255) NULL,
+    lkm_position VARCHAR(255) NULL,
+    lkm_cust_id  BIGINT       NULL,
+    PRIMARY KEY (lkm_id),
+    CONSTRAINT fk_linkman_customer FOREIGN KEY (lkm_cust_id) REFERENCES cst_customer (cust_id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
@@ -0,0 +1,62 @@
+-- 客户来源/行业/级别、联系人性别改为保存字典编码
+--   1. 建字典表，把现有的不同取值编号
+--   2. 新增编码列并回填
+--   3. 删除原VARCHAR列
+--   取值按二进制比较（区分大小写、重音和尾部空格），与DictionaryRegistry中的比较方式一致：
+--   dict_value列使用utf8mb4_0900_bin（NO PAD，尾部空格也参与比较），取不同取值和回填时同样按此排序规则比较，
+--   默认排序规则utf8mb4_0900_ai_ci下"Café"和"Cafe"、"IT"和"it"会被合并为同一个编码
+CREATE TABLE IF NOT EXISTS sys_dict_code (
+    id         BIGINT       NOT NULL AUTO_INCREMENT,
+    dict_type  VARCHAR(32)  NOT NULL,
+    code       INT          NOT NULL,
+    dict_value VARCHAR(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_bin NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_dict_code UNIQUE (dict_type, code),
+    CONSTRAINT uk_dict_value UNIQUE (dict_type, dict_value)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+INSERT INTO sys_dict_code (dict_type, code, dict_value)
+SELECT 'custSource', (@n := @n + 1), v
+FROM (SELECT DISTINCT cust_source COLLATE utf8mb4_0900_bin AS v FROM cst_customer WHERE cust_source IS NOT NULL ORDER BY v) t,
+     (SELECT @n := 0) init;
+
+INSERT INTO sys_dict_code (dict_type, code, dict_value)
+SELECT 'custIndustry', (@n := @n + 1), v
+FROM (SELECT DISTINCT cust_industry COLLATE utf8mb4_0900_bin AS v FROM cst_customer WHERE cust_industry IS NOT NULL ORDER BY v) t,
+     (SELECT @n := 0) init;
+
+INSERT INTO sys_dict_code (dict_type, code, dict_value)
+SELECT 'custLevel', (@n := @n + 1), v
+FROM (SELECT DISTINCT cust_level COLLATE utf8mb4_0900_bin AS v FROM cst_customer WHERE cust_level IS NOT NULL ORDER BY v) t,
+     (SELECT @n := 0) init;
+
+INSERT INTO sys_dict_code (dict_type, code, dict_value)
+SELECT 'lkmGender', (@n := @n + 1), v
+FROM (SELECT DISTINCT lkm_gender COLLATE utf8mb4_0900_bin AS v FROM cst_linkman WHERE lkm_gender IS NOT NULL ORDER BY v) t,
+     (SELECT @n := 0) init;
+
+ALTER TABLE cst_customer
+    ADD COLUMN cust_source_code INT NULL,
+    ADD COLUMN cust_industry_code INT NULL,
+    ADD COLUMN cust_level_code INT NULL;
+
+UPDATE cst_customer c
+    LEFT JOIN sys_dict_code s ON s.dict_type = 'custSource' AND s.dict_value = c.cust_source COLLATE utf8mb4_0900_bin
+    LEFT JOIN sys_dict_code i ON i.dict_type = 'custIndustry' AND i.dict_value = c.cust_industry COLLATE utf8mb4_0900_bin
+    LEFT JOIN sys_dict_code l ON l.dict_type = 'custLevel' AND l.dict_value = c.cust_level COLLATE utf8mb4_0900_bin
+SET c.cust_source_code   = s.code,
+    c.cust_industry_code = i.code,
+    c.cust_level_code    = l.code;
+
+ALTER TABLE cst_customer
+    DROP COLUMN cust_source,
+    DROP COLUMN cust_industry,
+    DROP COLUMN cust_level;
+
+ALTER TABLE cst_linkman ADD COLUMN lkm_gender_code INT NULL;
+
+UPDATE cst_linkman m
+    JOIN sys_dict_code g ON g.dict_type = 'lkmGender' AND g.dict_value = m.lkm_gender COLLATE utf8mb4_0900_bin
+SET m.lkm_gender_code = g.code;
+
+ALTER TABLE cst_linkman DROP COLUMN lkm_gender;
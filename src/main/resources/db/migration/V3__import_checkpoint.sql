@@ -0,0 +1,16 @@
+-- 分块导入的检查点，与分块数据在同一个事务中写入
+--   sys_import_chunk  已提交的分块号
+--   sys_import_key    已提交的 cust_key -> cust_id 映射，重新导入联系人时用来恢复关联（key区分大小写）
+CREATE TABLE IF NOT EXISTS sys_import_chunk (
+    import_id  CHAR(64) NOT NULL,
+    chunk_no   INT      NOT NULL,
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (import_id, chunk_no)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS sys_import_key (
+    import_id CHAR(64)     NOT NULL,
+    cust_key  VARCHAR(255) NOT NULL,
+    cust_id   BIGINT       NOT NULL,
+    PRIMARY KEY (import_id, cust_key)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_bin;
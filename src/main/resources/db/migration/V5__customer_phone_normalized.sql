@@ -0,0 +1,11 @@
+-- 规范化后的客户电话，existsByCustPhone按此列比较，规则与CustomerMembershipIndex.normalizePhone一致：
+--   只保留数字；13位且以86开头时去掉86国家码；没有数字时为NULL
+--   STORED生成列，所有写入路径（JPA、JDBC导入、LOAD DATA）都会自动维护
+ALTER TABLE cst_customer
+    ADD COLUMN cust_phone_norm VARCHAR(255) GENERATED ALWAYS AS (
+        CASE
+            WHEN REGEXP_REPLACE(cust_phone, '[^0-9]', '') REGEXP '^86[0-9]{11}$'
+                THEN SUBSTRING(REGEXP_REPLACE(cust_phone, '[^0-9]', ''), 3)
+            ELSE NULLIF(REGEXP_REPLACE(cust_phone, '[^0-9]', ''), '')
+        END) STORED,
+    ADD INDEX idx_customer_phone_norm (cust_phone_norm);
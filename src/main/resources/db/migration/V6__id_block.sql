@@ -0,0 +1,16 @@
+-- 客户、联系人主键改为号段分配，不再依赖自增值
+--   Hibernate的TableGenerator（pooled-lo）和IdAllocator共用此表：next_id是下一个未分配的主键
+--   成组插入和导入一次预留一段主键后显式写入，多行INSERT中客户与联系人的对应关系不再依赖
+--   getGeneratedKeys推算的自增值（innodb_autoinc_lock_mode=2时同一条语句的自增值可能不连续）
+--   原AUTO_INCREMENT属性保留，不再使用
+CREATE TABLE IF NOT EXISTS sys_id_block (
+    id_name VARCHAR(255) NOT NULL,
+    next_id BIGINT       NOT NULL,
+    PRIMARY KEY (id_name)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+INSERT INTO sys_id_block (id_name, next_id)
+SELECT 'cst_customer', COALESCE(MAX(cust_id), 0) + 1 FROM cst_customer;
+
+INSERT INTO sys_id_block (id_name, next_id)
+SELECT 'cst_linkman', COALESCE(MAX(lkm_id), 0) + 1 FROM cst_linkman;
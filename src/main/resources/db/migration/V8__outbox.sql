@@ -0,0 +1,11 @@
+-- 事务发件箱，事件与业务数据在同一个事务中写入，由OutboxRelay按id顺序投递后删除
+--   不放在V1中：已有表的库被baseline为版本1，不执行V1
+CREATE TABLE IF NOT EXISTS cst_outbox (
+    id             BIGINT      NOT NULL AUTO_INCREMENT,
+    aggregate_type VARCHAR(32) NULL,
+    aggregate_id   BIGINT      NULL,
+    event_type     VARCHAR(8)  NULL,
+    payload        TEXT        NULL,
+    created_at     DATETIME(6) NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
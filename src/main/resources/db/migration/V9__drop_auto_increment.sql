@@ -0,0 +1,12 @@
+-- 去掉客户、联系人主键的AUTO_INCREMENT（V6之后主键由sys_id_block号段分配）
+--   保留AUTO_INCREMENT时，不带主键的INSERT（手工SQL、其他系统）会拿到已预留给TableGenerator/IdAllocator
+--   号段内的主键，之后按号段插入时主键冲突；去掉后这样的INSERT直接失败，需要显式写入从sys_id_block取得的主键。
+--   cust_id被cst_linkman的外键引用，外键在ddl-auto建表时由Hibernate命名，名称不固定，
+--   修改列定义期间关闭外键检查，而不是删除后重建外键
+SET FOREIGN_KEY_CHECKS = 0;
+
+ALTER TABLE cst_customer MODIFY cust_id BIGINT NOT NULL;
+
+ALTER TABLE cst_linkman MODIFY lkm_id BIGINT NOT NULL;
+
+SET FOREIGN_KEY_CHECKS = 1;
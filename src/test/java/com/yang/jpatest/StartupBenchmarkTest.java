@@ -0,0 +1,131 @@
+package com.yang.jpatest;
+
+import com.yang.jpatest.config.StartupMetrics;
+import com.yang.jpatest.dao.CustomerRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 启动耗时基准：默认配置和fast配置各在独立的JVM中启动若干次，
+ * 记录JVM启动到应用就绪、到第一个请求（查询一次数据库）完成的时间
+ *      每次都是全新的JVM，不受前一次加载、编译过的类影响；
+ *      不在默认测试中运行：mvn -Pstartup-benchmark test
+ */
+@Slf4j
+@Tag("benchmark")
+class StartupBenchmarkTest {
+
+    private static final String RESULT_PREFIX = "STARTUP_RESULT ";
+
+    @Test
+    public void testTimeToFirstRequest() throws Exception {
+        int samples = Integer.getInteger("jpatest.benchmark.samples", 5);
+        for (String profile : new String[]{"default", "fast"}) {
+            List<Long> ready = new ArrayList<>(samples);
+            List<Long> firstRequest = new ArrayList<>(samples);
+            for (int i = 0; i < samples; i++) {
+                long[] result = fork(profile);
+                ready.add(result[0]);
+                firstRequest.add(result[1]);
+            }
+            log.info("启动耗时[{}] 样本{}次: 就绪 {}，第一个请求 {}", profile, samples, summary(ready), summary(firstRequest));
+        }
+    }
+
+    /**
+     * 在新的JVM中启动一次应用
+     * @return [JVM启动到就绪, JVM启动到第一个请求完成]
+     */
+    private long[] fork(String profile) throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                Child.class.getName(), profile)
+                .redirectErrorStream(true)
+                .start();
+        String result = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(RESULT_PREFIX)) {
+                    result = line.substring(RESULT_PREFIX.length());
+                }
+            }
+        }
+        assertEquals(0, process.waitFor(), "启动失败: " + profile);
+        assertNotNull(result, "没有输出启动耗时: " + profile);
+        String[] values = result.trim().split(" ");
+        long[] millis = {Long.parseLong(values[0]), Long.parseLong(values[1])};
+        assertTrue(millis[0] > 0 && millis[1] >= millis[0], "启动耗时无效: " + result);
+        return millis;
+    }
+
+    private static String summary(List<Long> values) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return "min=" + sorted.get(0) + "ms, median=" + sorted.get(sorted.size() / 2) + "ms, max="
+                + sorted.get(sorted.size() - 1) + "ms";
+    }
+
+    /**
+     * 子JVM：启动应用，请求一次探测接口，把耗时输出到标准输出后退出
+     */
+    public static class Child {
+
+        public static void main(String[] args) throws Exception {
+            SpringApplicationBuilder builder = new SpringApplicationBuilder(JpatestApplication.class, ProbeController.class)
+                    .properties("server.port=0", "jpatest.outbox.relay-enabled=false");
+            if (!"default".equals(args[0])) {
+                builder.profiles(args[0]);
+            }
+            ConfigurableApplicationContext context = builder.run();
+            int status;
+            try {
+                int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+                HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/startup-probe")
+                        .openConnection();
+                status = connection.getResponseCode();
+                connection.disconnect();
+                StartupMetrics metrics = context.getBean(StartupMetrics.class);
+                if (status == 200) {
+                    System.out.println(RESULT_PREFIX + metrics.getReadyMillis() + " " + metrics.getFirstRequestMillis());
+                }
+            } finally {
+                context.close();
+            }
+            System.exit(status == 200 ? 0 : 1);
+        }
+    }
+
+    /**
+     * 探测接口：经过Web层并查询一次数据库
+     */
+    @RestController
+    public static class ProbeController {
+
+        @Autowired
+        private CustomerRepository customerRepository;
+
+        @GetMapping("/startup-probe")
+        public long probe() {
+            return customerRepository.count();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.yang.jpatest.admission;
+
+import com.yang.jpatest.dao.CustomerRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkheadTest {
+
+    /**
+     * 并发已满且不允许排队时立即拒绝，释放后可以再次进入
+     */
+    @Test
+    public void testReject() {
+        Bulkhead bulkhead = new Bulkhead(CostClass.HEAVY, 1, 0, 0, 30);
+        bulkhead.acquire();
+        AdmissionRejectedException e = assertThrows(AdmissionRejectedException.class, bulkhead::acquire);
+        assertEquals(CostClass.HEAVY, e.getCostClass());
+        assertEquals(1, bulkhead.getInFlight());
+
+        bulkhead.release();
+        bulkhead.acquire();
+        assertEquals(2L, bulkhead.getAdmitted());
+        assertEquals(1L, bulkhead.getRejected());
+    }
+
+    /**
+     * 排队超过最长等待时间后拒绝
+     */
+    @Test
+    public void testWaitTimeout() {
+        Bulkhead bulkhead = new Bulkhead(CostClass.LIST, 1, 10, 50, 10);
+        bulkhead.acquire();
+        long start = System.currentTimeMillis();
+        assertThrows(AdmissionRejectedException.class, bulkhead::acquire);
+        assertTrue(System.currentTimeMillis() - start >= 40);
+    }
+
+    /**
+     * 注解优先，其次按分页参数和方法名推断
+     */
+    @Test
+    public void testClassify() throws NoSuchMethodException {
+        assertEquals(CostClass.POINT, CostClass.classify(CustomerRepository.class.getMethod("findJPQL", String.class)));
+        assertEquals(CostClass.POINT, CostClass.classify(CustomerRepository.class.getMethod("findById", Object.class)));
+        assertEquals(CostClass.POINT, CostClass.classify(CustomerRepository.class.getMethod("findByCustName", String.class)));
+        assertEquals(CostClass.LIST, CostClass.classify(CustomerRepository.class.getMethod("findAll", Pageable.class)));
+        assertEquals(CostClass.HEAVY, CostClass.classify(CustomerRepository.class.getMethod("findAllSql")));
+        assertEquals(CostClass.HEAVY, CostClass.classify(CustomerRepository.class.getMethod("findByCustNameLike", String.class)));
+        assertEquals(CostClass.HEAVY, CostClass.classify(CustomerRepository.class.getMethod("countGroupByIndustry")));
+        assertFalse(CostClass.isReadOnly(CustomerRepository.class.getMethod("updateCustomer", String.class, Long.class)));
+        assertEquals(CostClass.WRITE, CostClass.classify(CustomerRepository.class.getMethod("updateCustomer", String.class, Long.class)));
+        assertEquals(CostClass.WRITE, CostClass.classify(CustomerRepository.class.getMethod("save", Object.class)));
+        assertEquals(CostClass.WRITE, CostClass.classify(CustomerRepository.class.getMethod("deleteById", Object.class)));
+    }
+
+    /**
+     * 并发进入时排队数不超过上限：1个执行、2个排队，其余立即拒绝
+     */
+    @Test
+    public void testQueueLimitUnderContention() throws InterruptedException {
+        Bulkhead bulkhead = new Bulkhead(CostClass.LIST, 1, 2, 2000, 10);
+        bulkhead.acquire();
+        int threads = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger maxWaiting = new AtomicInteger();
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                try {
+                    start.await();
+                    bulkhead.acquire();
+                    bulkhead.release();
+                } catch (AdmissionRejectedException e) {
+                    rejected.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    maxWaiting.accumulateAndGet(bulkhead.getWaiting(), Math::max);
+                    done.countDown();
+                }
+            }).start();
+        }
+        start.countDown();
+        long deadline = System.currentTimeMillis() + 1000;
+        while (rejected.get() < threads - 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, bulkhead.getWaiting());
+        bulkhead.release();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(threads - 2, rejected.get());
+        assertTrue(maxWaiting.get() <= 2);
+    }
+}
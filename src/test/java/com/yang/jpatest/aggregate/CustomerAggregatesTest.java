@@ -0,0 +1,47 @@
+package com.yang.jpatest.aggregate;
+
+import com.yang.jpatest.aggregate.CustomerAggregates.Dimension;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomerAggregatesTest {
+
+    /**
+     * 增量累加：修改行业时旧分组减一，新分组加一，计数为0的分组被移除
+     */
+    @Test
+    public void testMerge() {
+        CustomerAggregates total = new CustomerAggregates();
+        total.adjustCustomers(Dimension.INDUSTRY, "IT", 2);
+        total.adjustCustomers(Dimension.INDUSTRY, "教育", 1);
+
+        CustomerAggregates delta = new CustomerAggregates();
+        delta.adjustCustomers(Dimension.INDUSTRY, "教育", -1);
+        delta.adjustCustomers(Dimension.INDUSTRY, "IT", 1);
+        total.merge(delta);
+
+        assertEquals(3L, total.getCustomerCounts(Dimension.INDUSTRY).get("IT"));
+        assertFalse(total.getCustomerCounts(Dimension.INDUSTRY).containsKey("教育"));
+    }
+
+    /**
+     * 分组字段为null时统计到UNSET分组
+     */
+    @Test
+    public void testNullValue() {
+        CustomerAggregates total = new CustomerAggregates();
+        total.adjustCustomers(Dimension.LEVEL, null, 1);
+        assertEquals(1L, total.getCustomerCounts(Dimension.LEVEL).get(CustomerAggregates.UNSET));
+    }
+
+    @Test
+    public void testLinkManCounts() {
+        CustomerAggregates total = new CustomerAggregates();
+        total.adjustLinkMans(1L, 2);
+        total.adjustLinkMans(1L, -2);
+        total.adjustLinkMans(null, 1);
+        assertEquals(0L, total.getLinkManCount(1L));
+        assertTrue(total.isEmpty());
+    }
+}
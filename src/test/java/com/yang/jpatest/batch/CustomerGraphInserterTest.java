@@ -0,0 +1,18 @@
+package com.yang.jpatest.batch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomerGraphInserterTest {
+
+    /**
+     * 多行INSERT的占位符组数与行数一致
+     */
+    @Test
+    public void testValuesSql() {
+        assertEquals("INSERT INTO t (a, b) VALUES (?, ?), (?, ?), (?, ?)",
+                CustomerGraphInserter.valuesSql("INSERT INTO t (a, b) VALUES ", 2, 3));
+        assertEquals("INSERT INTO t (a) VALUES (?)", CustomerGraphInserter.valuesSql("INSERT INTO t (a) VALUES ", 1, 1));
+    }
+}
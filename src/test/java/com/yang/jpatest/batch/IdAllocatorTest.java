@@ -0,0 +1,53 @@
+package com.yang.jpatest.batch;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class IdAllocatorTest {
+
+    @Autowired
+    private IdAllocator idAllocator;
+
+    /**
+     * 并发预留的号段互不重叠
+     */
+    @Test
+    public void testReserveConcurrently() throws Exception {
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                futures.add(executor.submit(() -> {
+                    long first = idAllocator.reserve(IdAllocator.LINKMAN, 10);
+                    for (long id = first; id < first + 10; id++) {
+                        assertTrue(ids.add(id), "主键重复分配: " + id);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(200, ids.size());
+    }
+
+    @Test
+    public void testUnknownName() {
+        assertThrows(IllegalStateException.class, () -> idAllocator.reserve("no_such_table", 1));
+    }
+}
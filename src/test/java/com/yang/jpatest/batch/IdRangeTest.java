@@ -0,0 +1,38 @@
+package com.yang.jpatest.batch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdRangeTest {
+
+    /**
+     * 按min/max平均切分，区间首尾相接覆盖[min, max]
+     */
+    @Test
+    public void testSplit() {
+        List<IdRange> ranges = IdRange.split(1, 10, 3);
+        assertEquals(Arrays.asList(new IdRange(1, 4), new IdRange(5, 8), new IdRange(9, 10)), ranges);
+        assertEquals(Arrays.asList(new IdRange(5, 5)), IdRange.split(5, 5, 4));
+    }
+
+    /**
+     * 按抽样边界切分，重复或越界的边界被忽略
+     */
+    @Test
+    public void testSplitByBoundaries() {
+        List<IdRange> ranges = IdRange.split(1, 100, Arrays.asList(10L, 10L, 50L, 200L));
+        assertEquals(Arrays.asList(new IdRange(1, 9), new IdRange(10, 49), new IdRange(50, 100)), ranges);
+    }
+
+    @Test
+    public void testHalve() {
+        IdRange[] halves = new IdRange(1, 5).halve();
+        assertEquals(new IdRange(1, 3), halves[0]);
+        assertEquals(new IdRange(4, 5), halves[1]);
+        assertThrows(IllegalArgumentException.class, () -> new IdRange(2, 1));
+    }
+}
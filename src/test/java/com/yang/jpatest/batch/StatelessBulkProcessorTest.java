@@ -0,0 +1,133 @@
+package com.yang.jpatest.batch;
+
+import com.yang.jpatest.dao.CustomerRepository;
+import com.yang.jpatest.entity.Customer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 关闭定时中继，发件箱中的事件保留到测试检查
+ */
+@SpringBootTest(properties = "jpatest.outbox.relay-enabled=false")
+class StatelessBulkProcessorTest {
+
+    private static final String BY_ADDRESS = "FROM Customer c WHERE c.custAddress = :address ORDER BY c.custId";
+
+    private static final String NAME_QUERY = "SELECT cust_name FROM cst_customer WHERE cust_id = ?";
+
+    private static final String EVENT_QUERY = "SELECT COUNT(*) FROM cst_outbox " +
+            "WHERE aggregate_type = 'Customer' AND aggregate_id = ? AND event_type = 'UPDATE'";
+
+    @Autowired
+    private StatelessBulkProcessor statelessBulkProcessor;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 7行按每块3行分为3块，按主键顺序逐块交给回调；
+     *      读取游标打开期间，前面分块的修改已经各自提交，写入和发件箱事件对其他连接可见
+     */
+    @Test
+    public void testStreamedChunksCommitEachInterval() {
+        String address = uniqueAddress();
+        List<Long> ids = save(address, 7);
+        List<List<Long>> chunks = new ArrayList<>();
+
+        long rows = statelessBulkProcessor.process(Customer.class, BY_ADDRESS, params(address), 3, (chunk, writer) -> {
+            for (List<Long> previous : chunks) {
+                for (Long custId : previous) {
+                    assertTrue(renamed(custId), "前一个分块未提交: " + custId);
+                    assertEquals(1, events(custId));
+                }
+            }
+            for (Customer customer : chunk) {
+                customer.setCustName(customer.getCustName() + "-bulk");
+                writer.update(customer);
+            }
+            assertEquals(chunk.size(), writer.getWrites());
+            chunks.add(chunk.stream().map(Customer::getCustId).collect(Collectors.toList()));
+        });
+
+        assertEquals(7, rows);
+        assertEquals(3, chunks.size());
+        assertEquals(ids.subList(0, 3), chunks.get(0));
+        assertEquals(ids.subList(3, 6), chunks.get(1));
+        assertEquals(ids.subList(6, 7), chunks.get(2));
+        for (Long custId : ids) {
+            assertTrue(renamed(custId));
+            assertEquals(1, events(custId));
+        }
+    }
+
+    /**
+     * 某个分块处理失败时只回滚这个分块（包括发件箱事件），之前已提交的分块保留，之后的分块不再处理
+     */
+    @Test
+    public void testFailingChunkRollsBack() {
+        String address = uniqueAddress();
+        List<Long> ids = save(address, 7);
+        int[] calls = new int[1];
+
+        IllegalStateException error = assertThrows(IllegalStateException.class, () ->
+                statelessBulkProcessor.process(Customer.class, BY_ADDRESS, params(address), 3, (chunk, writer) -> {
+                    for (Customer customer : chunk) {
+                        customer.setCustName(customer.getCustName() + "-bulk");
+                        writer.update(customer);
+                    }
+                    if (++calls[0] == 2) {
+                        throw new IllegalStateException("模拟处理失败");
+                    }
+                }));
+
+        assertEquals("模拟处理失败", error.getMessage());
+        assertEquals(2, calls[0]);
+        for (int i = 0; i < ids.size(); i++) {
+            Long custId = ids.get(i);
+            assertEquals(i < 3, renamed(custId), "客户" + custId);
+            assertEquals(i < 3 ? 1 : 0, events(custId), "客户" + custId);
+        }
+    }
+
+    private List<Long> save(String address, int count) {
+        List<Long> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Customer customer = new Customer();
+            customer.setCustName(address + "-" + i);
+            customer.setCustAddress(address);
+            ids.add(customerRepository.save(customer).getCustId());
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private boolean renamed(Long custId) {
+        return jdbcTemplate.queryForObject(NAME_QUERY, String.class, custId).endsWith("-bulk");
+    }
+
+    private int events(Long custId) {
+        return jdbcTemplate.queryForObject(EVENT_QUERY, Integer.class, custId);
+    }
+
+    private static Map<String, Object> params(String address) {
+        return Collections.singletonMap("address", address);
+    }
+
+    private static String uniqueAddress() {
+        return "bulk-" + UUID.randomUUID();
+    }
+}
@@ -0,0 +1,40 @@
+package com.yang.jpatest.bloom;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    /**
+     * 加入过的值一定判定为可能存在，未加入的值误判率接近设定值
+     */
+    @Test
+    public void testMightContain() {
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.put("customer-" + i);
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(filter.mightContain("customer-" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 10000; i < 20000; i++) {
+            if (filter.mightContain("customer-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 300, "误判次数过多: " + falsePositives);
+    }
+
+    /**
+     * 电话只保留数字并去掉国家码
+     */
+    @Test
+    public void testNormalizePhone() {
+        assertEquals("13800138000", CustomerMembershipIndex.normalizePhone("+86 138-0013-8000"));
+        assertEquals("13800138000", CustomerMembershipIndex.normalizePhone("13800138000"));
+        assertEquals("01012345678", CustomerMembershipIndex.normalizePhone("010-1234 5678"));
+        assertNull(CustomerMembershipIndex.normalizePhone("--"));
+    }
+}
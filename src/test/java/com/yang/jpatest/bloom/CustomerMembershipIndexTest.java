@@ -0,0 +1,54 @@
+package com.yang.jpatest.bloom;
+
+import com.yang.jpatest.batch.IdAllocator;
+import com.yang.jpatest.dao.CustomerRepository;
+import com.yang.jpatest.loader.CustomerLoader;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class CustomerMembershipIndexTest {
+
+    private static final String INSERT_SQL = "INSERT INTO cst_customer (cust_id, cust_name, cust_phone) VALUES (?, ?, ?)";
+
+    @Autowired
+    private CustomerMembershipIndex customerMembershipIndex;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private CustomerLoader customerLoader;
+
+    @Autowired
+    private IdAllocator idAllocator;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 默认不是唯一写入方：索引建好之后，绕过应用（直接JDBC）写入的客户仍然能查到
+     */
+    @Test
+    public void testRowWrittenOutsideAppIsFound() {
+        customerMembershipIndex.rebuild();
+        Long custId = idAllocator.reserve(IdAllocator.CUSTOMER, 1);
+        String custName = "bloom-" + UUID.randomUUID();
+        String custPhone = "139" + (10000000 + ThreadLocalRandom.current().nextInt(90000000));
+        jdbcTemplate.update(INSERT_SQL, custId, custName, custPhone);
+
+        assertTrue(customerRepository.existsById(custId));
+        assertTrue(customerRepository.existsByCustName(custName));
+        assertTrue(customerRepository.existsByCustPhone("+86 " + custPhone));
+        assertEquals(custId, customerRepository.findByCustName(custName).getCustId());
+        assertEquals(custId, customerLoader.findByCustName(custName).getCustId());
+        assertEquals(0, customerMembershipIndex.getNegatives());
+    }
+}
@@ -10,8 +10,12 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.test.annotation.Rollback;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnitUtil;
 import javax.persistence.criteria.*;
 import java.lang.reflect.Field;
 import java.util.List;
@@ -20,7 +24,7 @@ import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-@SpringBootTest
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.yang.jpatest.dao.StatementCounter")
 class CustomerRepositoryTest {
 
     @Autowired
@@ -29,6 +33,12 @@ class CustomerRepositoryTest {
     @Autowired
     private LinkManDao linkManDao;
 
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     /**
      * 保存客户：调用save(obj)方法
      */
@@ -55,6 +65,24 @@ class CustomerRepositoryTest {
         customerDao.save(customer.get());
     }
 
+    /**
+     * 电话按规范化后的值判断是否存在：国家码、空格和横线不影响结果
+     */
+    @Test
+    public void testExistsByCustPhone() {
+        Customer c = new Customer();
+        c.setCustName("电话测试用户");
+        c.setCustPhone("+86 138-0013-8000");
+        customerDao.save(c);
+        try {
+            assertTrue(customerDao.existsByCustPhone("13800138000"));
+            assertTrue(customerDao.existsByCustPhone("86 13800138000"));
+            assertFalse(customerDao.existsByCustPhone("13800138001"));
+        } finally {
+            customerDao.deleteById(c.getCustId());
+        }
+    }
+
     /**
      * 根据id删除：调用delete(id)方法
      */
@@ -404,8 +432,8 @@ class CustomerRepositoryTest {
 
     /**
      * 从联系人查询客户
-     *      默认情况下，从多方查一方使用立即加载
-     *      需要延迟加载，需要配置客户对象
+     *      JPA规范中从多方查一方默认立即加载，LinkMan.customer已配置为延迟加载（FetchType.LAZY），
+     *      getCustomer()得到的是代理，调用客户的属性时才查询；需要一起查出时使用LinkManFetchProfile.WITH_CUSTOMER
      */
     @Test
     // 解决could not initialize proxy错误(因为在单元测试类中进行，所有的操作不在同一事物内完成)
@@ -416,4 +444,54 @@ class CustomerRepositoryTest {
         Customer customer = linkMan.getCustomer();
         System.out.println(customer.toString());
     }
-}
\ No newline at end of file
+
+    /**
+     * 按加载方案查询联系人
+     *      CONTACT_ONLY：只查联系人表，客户是未初始化的代理
+     *      WITH_CUSTOMER：联系人join客户，一条SQL查出
+     *      每种方案在各自的事务（新的持久化上下文）中查询，不会复用另一种方案已加载的客户
+     */
+    @Test
+    public void testLinkManFetchProfile(){
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        PersistenceUnitUtil persistenceUnitUtil = entityManagerFactory.getPersistenceUnitUtil();
+        Long custId = transaction.execute(status -> {
+            Customer customer = new Customer();
+            customer.setCustName("加载方案测试客户");
+            for (int i = 1; i <= 2; i++) {
+                LinkMan linkMan = new LinkMan();
+                linkMan.setLkmName("加载方案测试联系人" + i);
+                linkMan.setCustomer(customer);
+                customer.getLinkmans().add(linkMan);
+            }
+            return customerDao.save(customer).getCustId();
+        });
+        Specification<LinkMan> ofCustomer = (root, query, cb) -> cb.equal(root.get("customer").get("custId"), custId);
+        try {
+            transaction.execute(status -> {
+                StatementCounter.reset();
+                List<LinkMan> contacts = linkManDao.findAll(ofCustomer, LinkManFetchProfile.CONTACT_ONLY);
+                assertEquals(2, contacts.size());
+                contacts.forEach(i -> assertFalse(persistenceUnitUtil.isLoaded(i, "customer")));
+                assertEquals(1, StatementCounter.count());
+                return null;
+            });
+            transaction.execute(status -> {
+                StatementCounter.reset();
+                List<LinkMan> withCustomer = linkManDao.findAll(ofCustomer, LinkManFetchProfile.WITH_CUSTOMER);
+                assertEquals(2, withCustomer.size());
+                withCustomer.forEach(i -> {
+                    assertTrue(persistenceUnitUtil.isLoaded(i, "customer"));
+                    assertEquals("加载方案测试客户", i.getCustomer().getCustName());
+                });
+                assertEquals(1, StatementCounter.count());
+                return null;
+            });
+        } finally {
+            transaction.execute(status -> {
+                customerDao.findById(custId).ifPresent(customerDao::delete);
+                return null;
+            });
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.yang.jpatest.dao;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * 统计当前线程发出的SQL条数，通过hibernate.session_factory.statement_inspector配置
+ *      按线程计数，不受定时任务等其他线程的查询影响
+ *
+ * @author ywq
+ */
+public class StatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+
+    public static void reset() {
+        COUNT.get()[0] = 0;
+    }
+
+    public static int count() {
+        return COUNT.get()[0];
+    }
+}
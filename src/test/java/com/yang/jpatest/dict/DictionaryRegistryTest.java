@@ -0,0 +1,76 @@
+package com.yang.jpatest.dict;
+
+import com.yang.jpatest.dao.CustomerRepository;
+import com.yang.jpatest.dao.CustomerSpecifications;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "jpatest.dict.miss-reload-interval=500")
+class DictionaryRegistryTest {
+
+    private static final String INSERT_SQL = "INSERT INTO sys_dict_code (dict_type, code, dict_value) " +
+            "SELECT ?, COALESCE(MAX(code), 0) + 1, ? FROM sys_dict_code WHERE dict_type = ?";
+
+    @Autowired
+    private DictionaryRegistry dictionaryRegistry;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 查询条件中的未知取值不会登记到字典
+     */
+    @Test
+    public void testQueryDoesNotRegister() {
+        String value = "未知行业-" + UUID.randomUUID();
+        assertTrue(customerRepository.findAll(CustomerSpecifications.industryIs(value)).isEmpty());
+        assertEquals(DictionaryRegistry.UNKNOWN_CODE, dictionaryRegistry.lookup(DictionaryRegistry.CUST_INDUSTRY, value));
+        assertNull(dictionaryRegistry.reload(DictionaryRegistry.CUST_INDUSTRY).valueOf(DictionaryRegistry.UNKNOWN_CODE));
+        assertFalse(dictionaryRegistry.getValues(DictionaryRegistry.CUST_INDUSTRY).containsValue(value));
+    }
+
+    /**
+     * 只有大小写、重音或尾部空格不同的取值分配各自的编码
+     */
+    @Test
+    public void testBinaryEquality() {
+        String suffix = UUID.randomUUID().toString();
+        String[] values = {"Café-" + suffix, "Cafe-" + suffix, "CAFE-" + suffix, "Cafe-" + suffix + " "};
+        Integer[] codes = new Integer[values.length];
+        for (int i = 0; i < values.length; i++) {
+            codes[i] = dictionaryRegistry.encode(DictionaryRegistry.CUST_INDUSTRY, values[i]);
+            for (int j = 0; j < i; j++) {
+                assertNotEquals(codes[j], codes[i], values[i]);
+            }
+        }
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(codes[i], dictionaryRegistry.encode(DictionaryRegistry.CUST_INDUSTRY, values[i]));
+            assertEquals(values[i], dictionaryRegistry.reload(DictionaryRegistry.CUST_INDUSTRY).valueOf(codes[i]));
+        }
+    }
+
+    /**
+     * 未知取值不会每次都重新加载字典：其他实例刚分配的取值在间隔内按未知取值处理，间隔过后能查到
+     */
+    @Test
+    public void testMissReloadRateLimited() throws Exception {
+        String value = "其他实例行业-" + UUID.randomUUID();
+        dictionaryRegistry.reload(DictionaryRegistry.CUST_INDUSTRY);
+        jdbcTemplate.update(INSERT_SQL, DictionaryRegistry.CUST_INDUSTRY, value, DictionaryRegistry.CUST_INDUSTRY);
+
+        assertEquals(DictionaryRegistry.UNKNOWN_CODE, dictionaryRegistry.lookup(DictionaryRegistry.CUST_INDUSTRY, value));
+        Thread.sleep(600);
+        Integer code = dictionaryRegistry.lookup(DictionaryRegistry.CUST_INDUSTRY, value);
+        assertNotEquals(DictionaryRegistry.UNKNOWN_CODE, code);
+        assertEquals(value, dictionaryRegistry.decode(DictionaryRegistry.CUST_INDUSTRY, code));
+    }
+}
@@ -0,0 +1,170 @@
+package com.yang.jpatest.importer;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkPipelineTest {
+
+    /**
+     * 10行按每块3行分为4块，全部写入，每块在提交前记录检查点
+     */
+    @Test
+    public void testWriteAllChunks() throws Exception {
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        MemoryCheckpoint checkpoint = new MemoryCheckpoint(calls);
+        ImportProgress progress = new ImportProgress();
+
+        // 单个写入线程，调用记录按顺序排列
+        pipeline(calls, checkpoint, progress, (connection, rows) -> {
+            rows.forEach(row -> written.add(row.getEntity()));
+            return ChunkResult.of(rows.size());
+        }).writers(1).run(csv(10));
+
+        assertEquals(10, written.size());
+        assertEquals(new HashSet<>(Arrays.asList(0, 1, 2, 3)), checkpoint.marked);
+        assertEquals(10L, progress.getRowsWritten());
+        assertEquals(4, Collections.frequency(calls, "commit"));
+        for (int i = 0; i < calls.size(); i++) {
+            if ("commit".equals(calls.get(i))) {
+                assertEquals("markDone", calls.get(i - 1));
+            }
+        }
+    }
+
+    /**
+     * 检查点中已完成的分块不再写入
+     */
+    @Test
+    public void testSkipDoneChunks() throws Exception {
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        MemoryCheckpoint checkpoint = new MemoryCheckpoint(calls);
+        checkpoint.done.addAll(Arrays.asList(0, 1));
+        ImportProgress progress = new ImportProgress();
+
+        pipeline(calls, checkpoint, progress, (connection, rows) -> {
+            rows.forEach(row -> written.add(row.getEntity()));
+            return ChunkResult.of(rows.size());
+        }).run(csv(10));
+
+        Collections.sort(written);
+        assertEquals(Arrays.asList("n10", "n7", "n8", "n9"), written);
+        assertEquals(2L, progress.getChunksSkipped());
+    }
+
+    /**
+     * 写入阶段自己跳过的行不计入写入行数
+     */
+    @Test
+    public void testCountsRowsActuallyWritten() throws Exception {
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        ImportProgress progress = new ImportProgress();
+
+        pipeline(calls, new MemoryCheckpoint(calls), progress, (connection, rows) -> {
+            int inserted = 0;
+            for (ImportRow<String> row : rows) {
+                if (!row.getEntity().endsWith("0")) {
+                    inserted++;
+                }
+            }
+            return ChunkResult.of(inserted);
+        }).run(csv(20));
+
+        assertEquals(20L, progress.getRowsRead());
+        assertEquals(18L, progress.getRowsWritten());
+    }
+
+    /**
+     * 写入失败时分块回滚、不记录检查点，导入以ImportFailedException结束
+     */
+    @Test
+    public void testFailureRollsBack() {
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        MemoryCheckpoint checkpoint = new MemoryCheckpoint(calls);
+
+        ChunkPipeline<String> pipeline = pipeline(calls, checkpoint, new ImportProgress(), (connection, rows) -> {
+            for (ImportRow<String> row : rows) {
+                if ("n5".equals(row.getEntity())) {
+                    throw new SQLException("模拟写入失败");
+                }
+            }
+            return ChunkResult.of(rows.size());
+        });
+
+        assertThrows(ImportFailedException.class, () -> pipeline.run(csv(10)));
+        assertFalse(checkpoint.marked.contains(1));
+        assertTrue(calls.contains("rollback"));
+    }
+
+    private static ChunkPipeline<String> pipeline(List<String> calls, ImportCheckpoint checkpoint,
+                                                  ImportProgress progress, ChunkWriter<String> writer) {
+        return new ChunkPipeline<>("test", dataSource(calls), record -> new ImportRow<>(null, record.get("name")),
+                writer, checkpoint, progress, null).chunkSize(3).parsers(2).writers(2).queueCapacity(2);
+    }
+
+    private static BufferedReader csv(int rows) {
+        StringBuilder csv = new StringBuilder("name\n");
+        for (int i = 1; i <= rows; i++) {
+            csv.append('n').append(i).append('\n');
+        }
+        return new BufferedReader(new StringReader(csv.toString()));
+    }
+
+    /**
+     * 只记录调用的连接，流水线只会调用setAutoCommit/commit/rollback/close
+     */
+    private static DataSource dataSource(List<String> calls) {
+        ClassLoader loader = ChunkPipelineTest.class.getClassLoader();
+        Connection connection = (Connection) Proxy.newProxyInstance(loader, new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    calls.add(method.getName());
+                    return null;
+                });
+        return (DataSource) Proxy.newProxyInstance(loader, new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> "getConnection".equals(method.getName()) ? connection : null);
+    }
+
+    private static class MemoryCheckpoint implements ImportCheckpoint {
+
+        private final List<String> calls;
+
+        private final Set<Integer> done = ConcurrentHashMap.newKeySet();
+
+        private final Set<Integer> marked = ConcurrentHashMap.newKeySet();
+
+        private MemoryCheckpoint(List<String> calls) {
+            this.calls = calls;
+        }
+
+        @Override
+        public boolean isDone(int chunkNo) {
+            return done.contains(chunkNo);
+        }
+
+        @Override
+        public void markDone(Connection connection, int chunkNo, Map<String, Long> keys) {
+            calls.add("markDone");
+            marked.add(chunkNo);
+        }
+
+        @Override
+        public void loadKeys(Map<String, Long> keys) {
+        }
+
+        @Override
+        public void delete() {
+            done.clear();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.yang.jpatest.importer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvParserTest {
+
+    @Test
+    public void testParseLine() {
+        assertEquals(Arrays.asList("c1", "谷歌", "", "IT"), CsvParser.parseLine("c1,谷歌,,IT"));
+    }
+
+    /**
+     * 双引号包裹的字段可以包含逗号，两个双引号表示一个双引号
+     */
+    @Test
+    public void testQuoted() {
+        assertEquals(Arrays.asList("c1", "北京,海淀", "say \"hi\""),
+                CsvParser.parseLine("c1,\"北京,海淀\",\"say \"\"hi\"\"\"\r"));
+    }
+
+    @Test
+    public void testUnclosedQuote() {
+        assertThrows(IllegalArgumentException.class, () -> CsvParser.parseLine("c1,\"北京"));
+    }
+
+    @Test
+    public void testRecord() {
+        Map<String, Integer> columns = new HashMap<>();
+        columns.put("cust_key", 0);
+        columns.put("cust_name", 1);
+        CsvRecord record = new CsvRecord(columns, CsvParser.parseLine("c1, "), 2);
+        assertEquals("c1", record.get("cust_key"));
+        assertNull(record.get("cust_name"));
+        assertNull(record.get("cust_phone"));
+        assertThrows(IllegalArgumentException.class,
+                () -> new CsvRecord(columns, CsvParser.parseLine("c1"), 3));
+    }
+}
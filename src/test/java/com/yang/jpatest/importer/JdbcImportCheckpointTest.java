@@ -0,0 +1,73 @@
+package com.yang.jpatest.importer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class JdbcImportCheckpointTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    /**
+     * 检查点随分块事务提交或回滚，重复记录同一分块会失败
+     */
+    @Test
+    public void testMarkDoneInChunkTransaction() throws Exception {
+        Path csv = csv("name\nn1\n");
+        JdbcImportCheckpoint checkpoint = new JdbcImportCheckpoint(dataSource, csv, 100);
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            checkpoint.markDone(connection, 0, Collections.singletonMap("k0", 100L));
+            connection.rollback();
+            checkpoint.markDone(connection, 1, Collections.singletonMap("k1", 101L));
+            connection.commit();
+            assertThrows(Exception.class, () -> checkpoint.markDone(connection, 1, Collections.<String, Long>emptyMap()));
+            connection.rollback();
+            connection.setAutoCommit(true);
+        }
+        try {
+            JdbcImportCheckpoint reloaded = new JdbcImportCheckpoint(dataSource, csv, 100);
+            assertFalse(reloaded.isDone(0));
+            assertTrue(reloaded.isDone(1));
+            Map<String, Long> keys = new HashMap<>();
+            reloaded.loadKeys(keys);
+            assertEquals(Collections.singletonMap("k1", 101L), keys);
+        } finally {
+            checkpoint.delete();
+        }
+        assertFalse(new JdbcImportCheckpoint(dataSource, csv, 100).isDone(1));
+    }
+
+    /**
+     * 文件内容或分块大小改变后是新的导入，不沿用之前的检查点
+     */
+    @Test
+    public void testImportIdCoversContentAndChunkSize() throws Exception {
+        Path csv = csv("name\nn1\n");
+        String original = JdbcImportCheckpoint.importId(csv, 100);
+        assertEquals(original, JdbcImportCheckpoint.importId(csv, 100));
+        assertNotEquals(original, JdbcImportCheckpoint.importId(csv, 50));
+        Files.write(csv, "name\nn1\nn2\n".getBytes(StandardCharsets.UTF_8));
+        assertNotEquals(original, JdbcImportCheckpoint.importId(csv, 100));
+    }
+
+    private static Path csv(String content) throws Exception {
+        Path csv = Paths.get("target", "checkpoint-test-" + System.nanoTime() + ".csv");
+        Files.createDirectories(csv.getParent());
+        return Files.write(csv, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,147 @@
+package com.yang.jpatest.loader;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchLoaderTest {
+
+    private ScheduledExecutorService scheduler;
+
+    private ExecutorService loadExecutor;
+
+    @BeforeEach
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        loadExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        scheduler.shutdownNow();
+        loadExecutor.shutdownNow();
+    }
+
+    /**
+     * 窗口内的key合并为一次批量查询，重复的key共享结果，结果中没有的key得到null
+     */
+    @Test
+    public void testWindow() {
+        List<Set<Long>> calls = new ArrayList<>();
+        BatchLoader<Long, String> loader = new BatchLoader<>(keys -> {
+            calls.add(new HashSet<>(keys));
+            Map<Long, String> values = new HashMap<>();
+            for (Long key : keys) {
+                if (key != 3L) {
+                    values.put(key, "v" + key);
+                }
+            }
+            return values;
+        }, scheduler, loadExecutor, 50, 100);
+        CompletableFuture<String> first = loader.load(1L);
+        CompletableFuture<String> second = loader.load(2L);
+        CompletableFuture<String> duplicate = loader.load(1L);
+        CompletableFuture<String> missing = loader.load(3L);
+        assertSame(first, duplicate);
+        assertEquals("v1", first.join());
+        assertEquals("v2", second.join());
+        assertNull(missing.join());
+        assertEquals(1, calls.size());
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L, 3L)), calls.get(0));
+        assertEquals(1L, loader.getBatches());
+        assertEquals(3.0, loader.getAverageBatchSize());
+    }
+
+    /**
+     * key数达到maxBatch时不等窗口结束立即查询，之后的key进入下一批
+     */
+    @Test
+    public void testMaxBatch() throws Exception {
+        List<Integer> sizes = new ArrayList<>();
+        BatchLoader<Long, Long> loader = new BatchLoader<>(keys -> {
+            sizes.add(keys.size());
+            Map<Long, Long> values = new HashMap<>();
+            keys.forEach(key -> values.put(key, key));
+            return values;
+        }, scheduler, loadExecutor, TimeUnit.HOURS.toMillis(1), 2);
+        CompletableFuture<Long> first = loader.load(1L);
+        CompletableFuture<Long> second = loader.load(2L);
+        CompletableFuture<Long> third = loader.load(3L);
+        assertEquals(1L, first.get(1, TimeUnit.SECONDS));
+        assertEquals(2L, second.get(1, TimeUnit.SECONDS));
+        assertFalse(third.isDone());
+        assertEquals(1, sizes.size());
+        assertEquals(2, sizes.get(0));
+        loader.close();
+    }
+
+    /**
+     * 批量查询抛出Error时同一批的所有future都以该异常结束，不会一直等待
+     */
+    @Test
+    public void testFailure() {
+        AssertionError error = new AssertionError("boom");
+        BatchLoader<Long, String> loader = new BatchLoader<>(keys -> {
+            throw error;
+        }, scheduler, loadExecutor, 10, 100);
+        CompletableFuture<String> first = loader.load(1L);
+        CompletableFuture<String> second = loader.load(2L);
+        assertSame(error, assertThrows(CompletionException.class, first::join).getCause());
+        assertSame(error, assertThrows(CompletionException.class, second::join).getCause());
+    }
+
+    /**
+     * 加载线程拒绝执行（已关闭）时，这一批的future以拒绝异常结束
+     */
+    @Test
+    public void testRejected() {
+        loadExecutor.shutdown();
+        BatchLoader<Long, String> loader = new BatchLoader<>(keys -> new HashMap<>(), scheduler, loadExecutor, 10, 1);
+        assertTrue(loader.load(1L).isCompletedExceptionally());
+    }
+
+    /**
+     * close后等待窗口中的和正在查询的future都以IllegalStateException结束，新的key直接失败
+     */
+    @Test
+    public void testClose() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BatchLoader<Long, String> loader = new BatchLoader<>(keys -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new HashMap<>();
+        }, scheduler, loadExecutor, TimeUnit.HOURS.toMillis(1), 2);
+        CompletableFuture<String> running = loader.load(1L);
+        loader.load(2L);
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        CompletableFuture<String> waiting = loader.load(3L);
+
+        loader.close();
+        assertTrue(assertThrows(CompletionException.class, running::join).getCause() instanceof IllegalStateException);
+        assertTrue(assertThrows(CompletionException.class, waiting::join).getCause() instanceof IllegalStateException);
+        assertTrue(loader.load(4L).isCompletedExceptionally());
+        release.countDown();
+    }
+}
@@ -0,0 +1,145 @@
+package com.yang.jpatest.loader;
+
+import com.yang.jpatest.dao.CustomerRepository;
+import com.yang.jpatest.entity.Customer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class CustomerLoaderTest {
+
+    @Autowired
+    private CustomerLoader customerLoader;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * 事务中不走缓存，能读到本事务尚未提交的修改；回滚后缓存中也没有这个修改
+     */
+    @Test
+    public void testBypassInTransaction() {
+        Customer customer = save(uniqueName());
+        String changed = uniqueName();
+        assertEquals(customer.getCustName(), customerLoader.findById(customer.getCustId()).getCustName());
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.execute(status -> {
+            customerRepository.updateCustomer(changed, customer.getCustId());
+            assertEquals(changed, customerLoader.findById(customer.getCustId()).getCustName());
+            assertEquals(customer.getCustId(), customerLoader.findByCustName(changed).getCustId());
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertEquals(customer.getCustName(), customerLoader.findById(customer.getCustId()).getCustName());
+        assertNull(customerLoader.findByCustName(changed));
+    }
+
+    /**
+     * 直接通过仓库修改、删除客户（不经过CustomerService）同样使缓存失效
+     */
+    @Test
+    public void testRepositoryWriteInvalidates() {
+        Customer customer = save(uniqueName());
+        assertNotNull(customerLoader.findById(customer.getCustId()));
+
+        customer.setCustName(uniqueName());
+        customerRepository.save(customer);
+        assertEquals(customer.getCustName(), customerLoader.findById(customer.getCustId()).getCustName());
+        assertEquals(customer.getCustId(), customerLoader.findByCustName(customer.getCustName()).getCustId());
+
+        customerRepository.deleteById(customer.getCustId());
+        assertNull(customerLoader.findById(customer.getCustId()));
+    }
+
+    /**
+     * 修改后、提交前其他线程读到旧值并写入缓存，提交时再次失效，提交后读到新值
+     */
+    @Test
+    public void testInvalidationRace() {
+        Customer customer = save(uniqueName());
+        String changed = uniqueName();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.execute(status -> {
+            Customer managed = customerRepository.findById(customer.getCustId()).orElseThrow(IllegalStateException::new);
+            managed.setCustName(changed);
+            customerRepository.flush();
+            String seen = CompletableFuture.supplyAsync(() -> customerLoader.findById(customer.getCustId()).getCustName())
+                    .join();
+            assertEquals(customer.getCustName(), seen);
+            return null;
+        });
+        assertEquals(changed, customerLoader.findById(customer.getCustId()).getCustName());
+    }
+
+    /**
+     * 每次返回缓存对象的副本，修改返回的对象不影响其他调用方
+     */
+    @Test
+    public void testReturnsCopies() {
+        Customer customer = save(uniqueName());
+        Customer first = customerLoader.findById(customer.getCustId());
+        Customer second = customerLoader.findById(customer.getCustId());
+        assertNotSame(first, second);
+        first.setCustName("modified");
+        assertEquals(customer.getCustName(), customerLoader.findById(customer.getCustId()).getCustName());
+        assertEquals(customer.getCustName(), customerLoader.findByCustName(customer.getCustName()).getCustName());
+    }
+
+    /**
+     * 与仓库一致：名称比较不区分大小写；同名客户有多个时事务内外都抛出IncorrectResultSizeDataAccessException
+     */
+    @Test
+    public void testDuplicateNames() {
+        String name = uniqueName();
+        Customer first = save(name);
+        assertEquals(first.getCustId(), customerLoader.findByCustName(name.toUpperCase()).getCustId());
+
+        save(name);
+        assertThrows(IncorrectResultSizeDataAccessException.class, () -> customerLoader.findByCustName(name));
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.execute(status -> {
+            assertThrows(IncorrectResultSizeDataAccessException.class, () -> customerLoader.findByCustName(name));
+            status.setRollbackOnly();
+            return null;
+        });
+    }
+
+    /**
+     * 仓库的批量删除不经过实体事件，同样使缓存失效
+     */
+    @Test
+    public void testBatchDeleteInvalidates() {
+        Customer customer = save(uniqueName());
+        assertNotNull(customerLoader.findById(customer.getCustId()));
+        assertNotNull(customerLoader.findByCustName(customer.getCustName()));
+
+        customerRepository.deleteInBatch(Collections.singletonList(customer));
+        assertNull(customerLoader.findById(customer.getCustId()));
+        assertNull(customerLoader.findByCustName(customer.getCustName()));
+    }
+
+    private Customer save(String custName) {
+        Customer customer = new Customer();
+        customer.setCustName(custName);
+        return customerRepository.save(customer);
+    }
+
+    private static String uniqueName() {
+        return "loader-" + UUID.randomUUID();
+    }
+}
@@ -0,0 +1,41 @@
+package com.yang.jpatest.loader;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NearCacheTest {
+
+    /**
+     * 超过容量淘汰最久未访问的条目，超过存活时间后不再命中
+     */
+    @Test
+    public void testEvictAndExpire() {
+        AtomicLong now = new AtomicLong();
+        NearCache<Long, String> cache = new NearCache<>(2, 100, now::get);
+        cache.put(1L, "a", cache.version());
+        cache.put(2L, "b", cache.version());
+        assertEquals("a", cache.get(1L));
+        cache.put(3L, "c", cache.version());
+        assertNull(cache.get(2L));
+        assertEquals("a", cache.get(1L));
+
+        now.set(100);
+        assertNull(cache.get(1L));
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * 查询期间发生失效时，查询结果不写入缓存
+     */
+    @Test
+    public void testStalePut() {
+        NearCache<Long, String> cache = new NearCache<>(10, 1000);
+        long version = cache.version();
+        cache.invalidate(1L);
+        cache.put(1L, "old", version);
+        assertNull(cache.get(1L));
+    }
+}
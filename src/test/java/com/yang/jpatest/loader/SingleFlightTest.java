@@ -0,0 +1,49 @@
+package com.yang.jpatest.loader;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    /**
+     * 进行中的调用被后到的调用方共享，完成后不再保留
+     */
+    @Test
+    public void testShared() {
+        SingleFlight<String, Integer> flights = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<Integer> pending = new CompletableFuture<>();
+        CompletableFuture<Integer> first = flights.execute("k", () -> {
+            calls.incrementAndGet();
+            return pending;
+        });
+        CompletableFuture<Integer> second = flights.execute("k", () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(2);
+        });
+        assertSame(first, second);
+        pending.complete(1);
+        assertEquals(1, second.join());
+        assertEquals(1, calls.get());
+        assertEquals(1L, flights.getShared());
+        assertEquals(0, flights.getInFlight());
+    }
+
+    /**
+     * 调用抛出异常时future以该异常结束，之后的调用重新执行
+     */
+    @Test
+    public void testFailure() {
+        SingleFlight<String, Integer> flights = new SingleFlight<>();
+        CompletableFuture<Integer> failed = flights.execute("k", () -> {
+            throw new IllegalStateException("boom");
+        });
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals(0, flights.getInFlight());
+        assertEquals(3, flights.execute("k", () -> CompletableFuture.completedFuture(3)).join());
+    }
+}
@@ -0,0 +1,155 @@
+package com.yang.jpatest.outbox;
+
+import com.yang.jpatest.dao.CustomerRepository;
+import com.yang.jpatest.entity.Customer;
+import com.yang.jpatest.entity.OutboxEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+
+/**
+ * 关闭定时中继，由测试自己调用drainBatch
+ */
+@SpringBootTest(properties = {"jpatest.outbox.relay-enabled=false", "jpatest.outbox.sink=memory"})
+class OutboxTest {
+
+    private static final String EVENTS_QUERY = "SELECT event_type FROM cst_outbox " +
+            "WHERE aggregate_type = 'Customer' AND aggregate_id = ? ORDER BY id";
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    @SpyBean
+    private InMemoryOutboxSink outboxSink;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    public void setUp() {
+        drainAll();
+        outboxSink.clear();
+    }
+
+    /**
+     * 事件与业务数据在同一个事务中提交
+     */
+    @Test
+    public void testWrittenWithTransaction() {
+        Customer customer = new TransactionTemplate(transactionManager).execute(status -> save(uniqueName()));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cst_customer WHERE cust_id = ?",
+                Integer.class, customer.getCustId()));
+        assertEquals(Arrays.asList(OutboxEvent.INSERT), events(customer.getCustId()));
+    }
+
+    /**
+     * 回滚时业务数据和事件都不写入
+     */
+    @Test
+    public void testNothingWrittenOnRollback() {
+        Customer customer = new TransactionTemplate(transactionManager).execute(status -> {
+            Customer saved = save(uniqueName());
+            customerRepository.flush();
+            status.setRollbackOnly();
+            return saved;
+        });
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cst_customer WHERE cust_id = ?",
+                Integer.class, customer.getCustId()));
+        assertTrue(events(customer.getCustId()).isEmpty());
+    }
+
+    /**
+     * JPQL改名不经过实体事件，仓库自己写修改事件
+     */
+    @Test
+    public void testJpqlRenameWritesEvent() {
+        Customer customer = save(uniqueName());
+        new TransactionTemplate(transactionManager).execute(status -> {
+            customerRepository.updateCustomer(uniqueName(), customer.getCustId());
+            return null;
+        });
+        assertEquals(Arrays.asList(OutboxEvent.INSERT, OutboxEvent.UPDATE), events(customer.getCustId()));
+    }
+
+    /**
+     * 中继按id顺序投递，同一个客户的事件保持提交顺序；投递后从发件箱删除
+     */
+    @Test
+    public void testRelayOrder() {
+        Customer customer = save(uniqueName());
+        customer.setCustAddress("relay-order");
+        customerRepository.save(customer);
+        customerRepository.deleteById(customer.getCustId());
+
+        drainAll();
+
+        List<OutboxEvent> published = outboxSink.getEvents();
+        for (int i = 1; i < published.size(); i++) {
+            assertTrue(published.get(i - 1).getId() < published.get(i).getId(), "投递顺序与id顺序不一致");
+        }
+        List<String> types = published.stream()
+                .filter(event -> "Customer".equals(event.getAggregateType()))
+                .filter(event -> customer.getCustId().equals(event.getAggregateId()))
+                .map(OutboxEvent::getEventType)
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList(OutboxEvent.INSERT, OutboxEvent.UPDATE, OutboxEvent.DELETE), types);
+        assertTrue(events(customer.getCustId()).isEmpty());
+    }
+
+    /**
+     * 投递失败时事件保留在发件箱，下次重新投递
+     */
+    @Test
+    public void testRelayRetry() {
+        Customer customer = save(uniqueName());
+        doThrow(new IllegalStateException("sink down")).doCallRealMethod().when(outboxSink).publish(anyList());
+
+        assertThrows(IllegalStateException.class, outboxRelay::drainBatch);
+        assertEquals(Arrays.asList(OutboxEvent.INSERT), events(customer.getCustId()));
+        assertTrue(outboxSink.getEvents().isEmpty());
+
+        drainAll();
+        assertTrue(events(customer.getCustId()).isEmpty());
+        assertTrue(outboxSink.getEvents().stream().anyMatch(event -> customer.getCustId().equals(event.getAggregateId())));
+    }
+
+    private void drainAll() {
+        while (outboxRelay.drainBatch() > 0) {
+            // 直到发件箱为空
+        }
+    }
+
+    private List<String> events(Long custId) {
+        return jdbcTemplate.queryForList(EVENTS_QUERY, String.class, custId);
+    }
+
+    private Customer save(String custName) {
+        Customer customer = new Customer();
+        customer.setCustName(custName);
+        return customerRepository.save(customer);
+    }
+
+    private static String uniqueName() {
+        return "outbox-" + UUID.randomUUID();
+    }
+}
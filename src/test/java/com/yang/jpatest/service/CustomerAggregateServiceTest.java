@@ -0,0 +1,80 @@
+package com.yang.jpatest.service;
+
+import com.yang.jpatest.dao.CustomerRepository;
+import com.yang.jpatest.entity.Customer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class CustomerAggregateServiceTest {
+
+    @Autowired
+    private CustomerAggregateService customerAggregateService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * 脏检查产生的修改在提交时刷新，增量由刷新中的监听器注册；
+     * 提交后、增量合并前开始的对账必须等合并完成后再建立快照，否则这次修改被统计两次
+     */
+    @Test
+    public void testFlushTimeUpdateRacingReconcile() throws Exception {
+        String before = "agg-" + UUID.randomUUID();
+        String after = "agg-" + UUID.randomUUID();
+        Customer customer = new Customer();
+        customer.setCustName(before);
+        customer.setCustIndustry(before);
+        customerRepository.save(customer);
+        customerAggregateService.reconcile();
+        assertEquals(1L, customerAggregateService.countByIndustry().get(before));
+
+        CompletableFuture<Void> reconcile = new CompletableFuture<>();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.execute(status -> {
+            Customer managed = customerRepository.findById(customer.getCustId()).orElseThrow(IllegalStateException::new);
+            // 不显式flush，修改在提交时才刷新
+            managed.setCustIndustry(after);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    // 在汇总数据的afterCommit之前执行：已提交，增量尚未合并
+                    CompletableFuture.runAsync(customerAggregateService::reconcile).whenComplete((result, error) -> {
+                        if (error != null) {
+                            reconcile.completeExceptionally(error);
+                        } else {
+                            reconcile.complete(null);
+                        }
+                    });
+                    try {
+                        reconcile.get(500, TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException e) {
+                        // 对账在等提交锁，继续完成提交
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            return null;
+        });
+        reconcile.get(30, TimeUnit.SECONDS);
+
+        assertEquals(1L, customerAggregateService.countByIndustry().get(after));
+        assertNull(customerAggregateService.countByIndustry().get(before));
+    }
+}
@@ -0,0 +1,113 @@
+package com.yang.jpatest.service;
+
+import com.yang.jpatest.entity.Customer;
+import com.yang.jpatest.entity.LinkMan;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 关闭定时中继，发件箱中的事件保留到测试检查；每条多行INSERT 4行
+ */
+@SpringBootTest(properties = {"jpatest.outbox.relay-enabled=false", "jpatest.graph-insert.rows-per-statement=4"})
+class CustomerServiceTest {
+
+    private static final String LINKMAN_QUERY = "SELECT l.lkm_name AS lkm_name, c.cust_name AS cust_name FROM cst_linkman l " +
+            "JOIN cst_customer c ON c.cust_id = l.lkm_cust_id WHERE l.lkm_id = ?";
+
+    private static final String EVENT_QUERY = "SELECT COUNT(*) FROM cst_outbox " +
+            "WHERE aggregate_type = ? AND aggregate_id = ? AND event_type = 'INSERT'";
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private CustomerAggregateService customerAggregateService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * 成组保存10个客户、各3个联系人：
+     *      联系人的外键指向各自的客户；INSERT条数为 ceil(10/4) + ceil(30/4) 条业务语句加发件箱的批次，
+     *      与行数成正比而不是每行一条；每行都有发件箱事件，汇总数据在提交后包含这些客户和联系人
+     */
+    @Test
+    public void testSaveAggregates() {
+        String tag = "graph-" + UUID.randomUUID();
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Customer customer = new Customer();
+            customer.setCustName(tag + "-" + i);
+            customer.setCustIndustry(tag);
+            for (int j = 0; j < 3; j++) {
+                LinkMan linkMan = new LinkMan();
+                linkMan.setLkmName(customer.getCustName() + "-lkm-" + j);
+                customer.getLinkmans().add(linkMan);
+            }
+            customers.add(customer);
+        }
+
+        long inserts = new TransactionTemplate(transactionManager).execute(status -> {
+            long before = insertCount();
+            customerService.saveAggregates(customers);
+            return insertCount() - before;
+        });
+
+        // 客户3条、联系人8条，发件箱的40个事件是一个JDBC批次，rewriteBatchedStatements合并为一条多行INSERT
+        assertEquals(3 + 8 + 1, inserts);
+        assertEquals(10L, customerAggregateService.countByIndustry().get(tag));
+        for (Customer customer : customers) {
+            assertNotNull(customer.getCustId());
+            assertEquals(1, events("Customer", customer.getCustId()));
+            assertEquals(3, customerAggregateService.countLinkMans(customer.getCustId()));
+            for (LinkMan linkMan : customer.getLinkmans()) {
+                assertSame(customer, linkMan.getCustomer());
+                Map<String, Object> row = jdbcTemplate.queryForMap(LINKMAN_QUERY, linkMan.getLkmId());
+                assertEquals(linkMan.getLkmName(), row.get("lkm_name"));
+                assertEquals(customer.getCustName(), row.get("cust_name"));
+                assertEquals(1, events("LinkMan", linkMan.getLkmId()));
+            }
+        }
+    }
+
+    /**
+     * 当前事务连接上已执行的INSERT条数（服务端统计，多行INSERT算一条）
+     */
+    private long insertCount() {
+        long[] count = new long[1];
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SHOW SESSION STATUS LIKE 'Com_insert'")) {
+                rs.next();
+                count[0] = rs.getLong(2);
+            }
+        });
+        return count[0];
+    }
+
+    private int events(String aggregateType, Long aggregateId) {
+        return jdbcTemplate.queryForObject(EVENT_QUERY, Integer.class, aggregateType, aggregateId);
+    }
+}